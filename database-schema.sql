@@ -66,3 +66,49 @@ CREATE INDEX idx_projects_status ON projects(status);
 CREATE INDEX idx_project_members_project_id ON project_members(project_id);
 CREATE INDEX idx_project_members_user_id ON project_members(user_id);
 
+
+-- Indexes for keyset (cursor) pagination: sort key + id
+CREATE INDEX idx_users_first_name_id ON users(first_name, id);
+CREATE INDEX idx_projects_name_id ON projects(project_name, id);
+CREATE INDEX idx_projects_deadline_id ON projects(deadline, id);
+CREATE INDEX idx_projects_name_deadline_id ON projects(project_name, deadline, id);
+
+-- Weekly availability bitmap per user (7 days x 96 fifteen-minute slots, bit = free)
+CREATE TABLE user_availability (
+    user_id INTEGER PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    bitmap BYTEA NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- TimetableSlot ids are allocated by Hibernate in blocks of 50 (pooled sequence) for JDBC batching
+ALTER SEQUENCE timetable_slots_id_seq INCREMENT BY 50;
+
+-- Gemini extraction results keyed by SHA-256(image) + prompt version
+CREATE TABLE timetable_extraction_cache (
+    cache_key VARCHAR(100) PRIMARY KEY,
+    response_json TEXT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    image_bytes BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_hit_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_extraction_cache_last_hit ON timetable_extraction_cache(last_hit_at);
+
+-- Hi/lo block allocation for users.custom_id (TTTPnn); each value reserves a block of numbers
+CREATE SEQUENCE IF NOT EXISTS user_custom_id_hi_seq;
+
+-- Fuzzy/prefix search (GET /admin/search/users, /admin/search/projects)
+-- gin_trgm_ops serves both ILIKE 'abc%' and the similarity operator %
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX idx_users_first_name_trgm ON users USING gin (first_name gin_trgm_ops);
+CREATE INDEX idx_users_username_trgm ON users USING gin (username gin_trgm_ops);
+CREATE INDEX idx_users_custom_id_trgm ON users USING gin (custom_id gin_trgm_ops);
+CREATE INDEX idx_users_specialty_trgm ON users USING gin (specialty gin_trgm_ops);
+CREATE INDEX idx_projects_name_trgm ON projects USING gin (project_name gin_trgm_ops);
+
+-- Persisted TokenRevocationRegistry entries (user id -> time claims stopped being trusted).
+-- No FK to users: the row must outlive a deleted user until that user's tokens expire.
+CREATE TABLE token_revocations (
+    user_id INTEGER PRIMARY KEY,
+    revoked_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,35 @@
+package com.parttimestudent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    @Value("${timetable.upload.request-timeout-seconds:120}")
+    private long uploadRequestTimeoutSeconds;
+
+    /**
+     * Scheduler จำกัดขนาดสำหรับงาน blocking (JPA, อ่าน/เขียนไฟล์, ย่อรูป) ใน pipeline แบบ Mono
+     * งานที่เกินคิวจะถูกปฏิเสธแทนการสร้าง thread เพิ่ม
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler blockingScheduler(
+            @Value("${timetable.blocking.threads:8}") int threads,
+            @Value("${timetable.blocking.queue-capacity:1000}") int queueCapacity) {
+        return Schedulers.newBoundedElastic(threads, queueCapacity, "timetable-blocking");
+    }
+
+    /**
+     * Controller ที่คืน Mono ใช้ servlet async; timeout ต้องยาวกว่า timeout รวมของ Gemini
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(uploadRequestTimeoutSeconds * 1000);
+    }
+}
@@ -0,0 +1,49 @@
+package com.parttimestudent.config;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class HibernateConfig {
+
+    /**
+     * ส่ง INSERT/UPDATE เป็น JDBC batch (ใช้กับ entity ที่ id มาจาก sequence เช่น TimetableSlot)
+     * ค่าที่ตั้งผ่าน spring.jpa.properties.* จะไม่ถูกเขียนทับ
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer(
+            @Value("${hibernate.jdbc.batch-size:50}") int batchSize) {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+        };
+    }
+
+    /**
+     * Second-level cache (Ehcache 3 ผ่าน JCache) สำหรับ User, Project, ProjectMember
+     * และ query ที่ใส่ hint cacheable ไว้; ขนาดของแต่ละ region กำหนดใน ehcache.xml
+     * cache เป็นแบบ local ต่อ instance (ไม่ cluster): ถ้ารันหลาย pod การแก้ไขที่ pod หนึ่ง
+     * (เช่นเปลี่ยน role ของ User) จะยังเห็นค่าเดิมที่ pod อื่นจนกว่า entry จะหมดอายุตาม TTL
+     * การเปลี่ยนแปลงที่ฐานข้อมูลทำเอง (ON DELETE SET NULL/CASCADE) cache ก็ไม่เห็นเช่นกัน ต้อง evict เอง
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            @Value("${hibernate.cache.enabled:true}") boolean enabled) {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.putIfAbsent(AvailableSettings.USE_QUERY_CACHE, enabled);
+            properties.putIfAbsent(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.putIfAbsent(ConfigSettings.PROVIDER, "org.ehcache.jsr107.EhcacheCachingProvider");
+            properties.putIfAbsent(ConfigSettings.CONFIG_URI, "ehcache.xml");
+            // Members are added/removed through ProjectMember, not the Project.projectMembers collection
+            properties.putIfAbsent(AvailableSettings.AUTO_EVICT_COLLECTION_CACHE, true);
+            // Needed for the per-region numbers in GET /admin/cache/stats
+            properties.putIfAbsent(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+}
@@ -1,6 +1,8 @@
 package com.parttimestudent.config;
 import com.parttimestudent.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -33,6 +35,9 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
+                // Async (Mono/CompletableFuture) results and error pages are re-dispatched after the
+                // original request was already authorized; JwtAuthenticationFilter does not run again for them
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers("/auth/**").permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/student/timetable/**").permitAll() 
@@ -62,9 +67,12 @@ public class SecurityConfig {
         return source;
     }
 
+    /**
+     * cost ของ BCrypt ปรับได้; hash เดิมที่ cost ไม่ตรงจะถูก rehash ตอน login (ดู PasswordHashingService)
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
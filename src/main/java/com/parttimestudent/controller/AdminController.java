@@ -1,23 +1,39 @@
 package com.parttimestudent.controller;
 
+import com.parttimestudent.dto.CursorPage;
 import com.parttimestudent.dto.ProjectRequest;
 import com.parttimestudent.dto.ProjectResponse;
 import com.parttimestudent.dto.RegisterRequest;
 import com.parttimestudent.dto.TimetableResponse;
+import com.parttimestudent.dto.UserSummary;
 import com.parttimestudent.entity.Project;
 import com.parttimestudent.entity.User;
+import com.parttimestudent.security.AuthenticatedUser;
+import com.parttimestudent.security.CurrentUser;
+import com.parttimestudent.security.UserDetailsCache;
+import com.parttimestudent.service.EntityCacheStatsService;
+import com.parttimestudent.service.ExtractionCacheService;
 import com.parttimestudent.service.ProjectService;
+import com.parttimestudent.service.ProjectStatsService;
+import com.parttimestudent.service.ResourceVersion;
 import com.parttimestudent.service.TimetableService;
 import com.parttimestudent.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/admin")
@@ -32,33 +48,57 @@ public class AdminController {
 
     @Autowired
     private TimetableService timetableService;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private ExtractionCacheService extractionCacheService;
+
+    @Autowired
+    private EntityCacheStatsService entityCacheStatsService;
+    
+    @Autowired
+    private ProjectStatsService projectStatsService;
     
     // ===== User Management =====
 
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers(
+    public ResponseEntity<List<UserSummary>> getAllUsers(
             @RequestParam(required = false) String sortBy,
             @RequestParam(required = false, defaultValue = "asc") String order) {
-        List<User> users;
+        List<UserSummary> users;
         if ("name".equalsIgnoreCase(sortBy)) {
-            users = userService.getAllUsersSortedByName(order);
+            users = userService.getUserSummariesSortedByName(order);
         } else {
-            users = userService.getAllUsers();
+            users = userService.getUserSummaries();
         }
         return ResponseEntity.ok(users);
     }
     
+    @GetMapping("/users/page")
+    public ResponseEntity<CursorPage<UserSummary>> getUsersPage(
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false, defaultValue = "asc") String order,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(userService.getUsersPage(sortBy, order, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+    
     @GetMapping("/users/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
-        User user = userService.getUserById(id);
-        return ResponseEntity.ok(user);
+    public ResponseEntity<UserSummary> getUserById(@PathVariable Long id) {
+        return ResponseEntity.ok(userService.getUserSummary(id));
     }
     
     @PutMapping("/users/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable Long id, 
-                                          @Valid @RequestBody RegisterRequest request) {
-        User user = userService.updateUser(id, request);
-        return ResponseEntity.ok(user);
+    public CompletableFuture<ResponseEntity<UserSummary>> updateUser(@PathVariable Long id, 
+                                                                    @Valid @RequestBody RegisterRequest request) {
+        return userService.updateUser(id, request)
+                .thenApply(user -> ResponseEntity.ok(UserSummary.from(user)));
     }
     
     @DeleteMapping("/users/{id}")
@@ -68,11 +108,11 @@ public class AdminController {
     }
     
     @PutMapping("/users/{id}/role")
-    public ResponseEntity<User> updateUserRole(@PathVariable Long id, 
-                                              @RequestParam String role) {
+    public ResponseEntity<UserSummary> updateUserRole(@PathVariable Long id, 
+                                                     @RequestParam String role) {
         User.UserRole userRole = User.UserRole.valueOf(role);
         User user = userService.updateUserRole(id, userRole);
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok(UserSummary.from(user));
     }
     
     // ===== Project Management =====
@@ -80,9 +120,8 @@ public class AdminController {
     @PostMapping("/projects")
     public ResponseEntity<ProjectResponse> createProject(
             @Valid @RequestBody ProjectRequest request,
-            Authentication authentication) {
-        User admin = userService.getUserByUsername(authentication.getName());
-        Project project = projectService.createProject(request, admin.getId());
+            @CurrentUser AuthenticatedUser currentUser) {
+        Project project = projectService.createProject(request, currentUser.getId());
         ProjectResponse response = projectService.convertToResponse(project);
         return ResponseEntity.ok(response);
     }
@@ -101,14 +140,44 @@ public class AdminController {
         } else {
             projects = projectService.getAllProjects();
         }
-        List<ProjectResponse> responses = projects.stream()
-                .map(projectService::convertToResponse)
-                .collect(Collectors.toList());
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
         return ResponseEntity.ok(responses);
     }
     
+    @GetMapping("/projects/page")
+    public ResponseEntity<CursorPage<ProjectResponse>> getProjectsPage(
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false, defaultValue = "asc") String order,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            CursorPage<Project> page = projectService.getProjectsPage(sortBy, order, cursor, size);
+            List<ProjectResponse> responses = projectService.convertToResponses(page.getItems());
+            return ResponseEntity.ok(new CursorPage<>(responses, page.getNextCursor()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+    
+    /**
+     * Stream ทุกโปรเจค (พร้อม PM และสมาชิก) เป็น newline-delimited JSON
+     * เขียนลง response ทันทีที่อ่านได้ ไม่สร้าง list ทั้งหมดไว้ใน heap
+     */
+    @GetMapping("/projects/export")
+    public void exportProjects(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        projectService.exportProjects(response.getOutputStream());
+    }
+    
     @GetMapping("/projects/{id}")
-    public ResponseEntity<ProjectResponse> getProjectById(@PathVariable Long id) {
+    public ResponseEntity<ProjectResponse> getProjectById(@PathVariable Long id, WebRequest webRequest) {
+        // Cheap version check first: 304 without loading members or building the body
+        ResourceVersion version = projectService.getProjectVersion(id);
+        if (webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return null;
+        }
+        
         Project project = projectService.getProjectById(id);
         ProjectResponse response = projectService.convertToResponse(project);
         return ResponseEntity.ok(response);
@@ -162,56 +231,103 @@ public class AdminController {
         }
     }
     
+    // ===== Search =====
+    
+    @GetMapping("/search/users")
+    public ResponseEntity<?> searchUsers(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(userService.searchUsers(q, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    @GetMapping("/search/projects")
+    public ResponseEntity<?> searchProjects(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(projectService.searchProjects(q, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
     // ===== Project Status Overview =====
     
     @GetMapping("/projects/status/overview")
     public ResponseEntity<ProjectStatusOverview> getProjectStatusOverview() {
+        // อ่านโปรเจคครั้งเดียว แปลงครั้งเดียว แล้วแยกใส่แต่ละกลุ่มในหน่วยความจำ
+        List<Project> projects = projectService.getAllProjectsOrderedByDeadline();
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
+        
+        LocalDate today = LocalDate.now();
+        LocalDate dueSoonLimit = today.plusDays(7);
+        List<ProjectResponse> dueSoon = new ArrayList<>();
+        List<ProjectResponse> overdue = new ArrayList<>();
+        List<ProjectResponse> needingHelp = new ArrayList<>();
+        
+        for (int i = 0; i < projects.size(); i++) {
+            Project project = projects.get(i);
+            ProjectResponse response = responses.get(i);
+            LocalDate deadline = project.getDeadline();
+            boolean open = project.getStatus() != Project.ProjectStatus.DONE;
+            
+            if (open && deadline != null && !deadline.isBefore(today) && !deadline.isAfter(dueSoonLimit)) {
+                dueSoon.add(response);
+            }
+            if (open && deadline != null && deadline.isBefore(today)) {
+                overdue.add(response);
+            }
+            if (project.getStatus() == Project.ProjectStatus.HELP) {
+                needingHelp.add(response);
+            }
+        }
+        
         ProjectStatusOverview overview = new ProjectStatusOverview();
-        overview.setAllProjects(projectService.getAllProjectsOrderedByDeadline()
-                .stream().map(projectService::convertToResponse).collect(Collectors.toList()));
-        overview.setProjectsDueSoon(projectService.getProjectsDueSoon(7)
-                .stream().map(projectService::convertToResponse).collect(Collectors.toList()));
-        overview.setOverdueProjects(projectService.getOverdueProjects()
-                .stream().map(projectService::convertToResponse).collect(Collectors.toList()));
-        overview.setProjectsNeedingHelp(projectService.getProjectsNeedingHelp()
-                .stream().map(projectService::convertToResponse).collect(Collectors.toList()));
+        overview.setAllProjects(responses);
+        overview.setProjectsDueSoon(dueSoon);
+        overview.setOverdueProjects(overdue);
+        overview.setProjectsNeedingHelp(needingHelp);
         return ResponseEntity.ok(overview);
     }
     
+    // In-memory counters; cheap enough to poll from a dashboard
+    @GetMapping("/projects/stats")
+    public ResponseEntity<Map<String, Object>> getProjectStats() {
+        return ResponseEntity.ok(projectStatsService.stats());
+    }
+    
     @GetMapping("/projects/status/{status}")
     public ResponseEntity<List<ProjectResponse>> getProjectsByStatus(@PathVariable String status) {
         Project.ProjectStatus projectStatus = Project.ProjectStatus.valueOf(status);
         List<Project> projects = projectService.getProjectsByStatus(projectStatus);
-        List<ProjectResponse> responses = projects.stream()
-                .map(projectService::convertToResponse)
-                .collect(Collectors.toList());
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
         return ResponseEntity.ok(responses);
     }
     
     @GetMapping("/projects/due-soon")
     public ResponseEntity<List<ProjectResponse>> getProjectsDueSoon(@RequestParam(defaultValue = "7") int days) {
         List<Project> projects = projectService.getProjectsDueSoon(days);
-        List<ProjectResponse> responses = projects.stream()
-                .map(projectService::convertToResponse)
-                .collect(Collectors.toList());
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
         return ResponseEntity.ok(responses);
     }
     
     @GetMapping("/projects/overdue")
     public ResponseEntity<List<ProjectResponse>> getOverdueProjects() {
         List<Project> projects = projectService.getOverdueProjects();
-        List<ProjectResponse> responses = projects.stream()
-                .map(projectService::convertToResponse)
-                .collect(Collectors.toList());
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
         return ResponseEntity.ok(responses);
     }
     
     @GetMapping("/projects/help")
     public ResponseEntity<List<ProjectResponse>> getProjectsNeedingHelp() {
         List<Project> projects = projectService.getProjectsNeedingHelp();
-        List<ProjectResponse> responses = projects.stream()
-                .map(projectService::convertToResponse)
-                .collect(Collectors.toList());
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
         return ResponseEntity.ok(responses);
     }
     
@@ -263,4 +379,15 @@ public class AdminController {
         TimetableResponse timetable = timetableService.getUserTimetableResponse(userId);
         return ResponseEntity.ok(timetable);
     }
-}
\ No newline at end of file
+
+    // ===== Cache Statistics =====
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("userDetails", userDetailsCache.stats());
+        stats.put("geminiExtraction", extractionCacheService.stats());
+        stats.put("hibernate", entityCacheStatsService.stats());
+        return ResponseEntity.ok(stats);
+    }
+}
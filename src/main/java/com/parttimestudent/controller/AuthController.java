@@ -6,9 +6,13 @@ import com.parttimestudent.dto.RegisterRequest;
 import com.parttimestudent.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/auth")
 @CrossOrigin(origins = "*")
@@ -17,23 +21,37 @@ public class AuthController {
     @Autowired
     private UserService userService;
     
+    /**
+     * BCrypt ทำบน hashing executor; request thread ถูกปล่อยระหว่างรอ
+     * คิว hashing เต็ม = 503
+     */
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(@Valid @RequestBody RegisterRequest request) {
         try {
-            AuthResponse response = userService.register(request);
-            return ResponseEntity.ok(response);
+            return userService.register(request)
+                    .thenApply(ResponseEntity::ok)
+                    .exceptionally(e -> ResponseEntity.badRequest().body(null));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(null));
         } catch (RuntimeException e) {
-            return ResponseEntity.badRequest().body(null);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(null));
         }
     }
     
+    /**
+     * BCrypt ทำบน hashing executor; request thread ถูกปล่อยระหว่างรอ
+     * คิว hashing เต็ม = 503
+     */
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@Valid @RequestBody LoginRequest request) {
         try {
-            AuthResponse response = userService.login(request);
-            return ResponseEntity.ok(response);
+            return userService.login(request)
+                    .thenApply(ResponseEntity::ok)
+                    .exceptionally(e -> ResponseEntity.badRequest().body(null));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(null));
         } catch (RuntimeException e) {
-            return ResponseEntity.badRequest().body(null);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(null));
         }
     }
 }
\ No newline at end of file
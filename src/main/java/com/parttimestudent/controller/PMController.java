@@ -1,20 +1,27 @@
 package com.parttimestudent.controller;
 
+import com.parttimestudent.dto.CommonFreeTimeResponse;
 import com.parttimestudent.dto.ProjectResponse;
+import com.parttimestudent.dto.StudentSummary;
 import com.parttimestudent.dto.TimetableResponse;
 import com.parttimestudent.entity.Project;
 import com.parttimestudent.entity.User;
+import com.parttimestudent.security.AuthenticatedUser;
+import com.parttimestudent.security.CurrentUser;
 import com.parttimestudent.service.ProjectService;
+import com.parttimestudent.service.ResourceVersion;
 import com.parttimestudent.service.TimetableService;
 import com.parttimestudent.service.UserService;
+import com.parttimestudent.service.WeeklyAvailability;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/pm")
@@ -31,29 +38,44 @@ public class PMController {
     private TimetableService timetableService;
     
     @GetMapping("/projects")
-    public ResponseEntity<List<ProjectResponse>> getMyManagedProjects(Authentication authentication) {
-        User user = userService.getUserByUsername(authentication.getName());
-        List<Project> projects = projectService.getProjectsByPm(user.getId());
-        List<ProjectResponse> responses = projects.stream()
-                .map(projectService::convertToResponse)
-                .collect(Collectors.toList());
+    public ResponseEntity<List<ProjectResponse>> getMyManagedProjects(@CurrentUser AuthenticatedUser currentUser) {
+        List<Project> projects = projectService.getProjectsByPm(currentUser.getId());
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
         return ResponseEntity.ok(responses);
     }
     
     @GetMapping("/projects/{id}")
-    public ResponseEntity<ProjectResponse> getProjectDetails(@PathVariable Long id) {
+    public ResponseEntity<ProjectResponse> getProjectDetails(@PathVariable Long id, WebRequest webRequest) {
+        // Cheap version check first: 304 without loading members or building the body
+        ResourceVersion version = projectService.getProjectVersion(id);
+        if (webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return null;
+        }
+        
         Project project = projectService.getProjectById(id);
         ProjectResponse response = projectService.convertToResponse(project);
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * ช่วงเวลาที่ PM และสมาชิกทุกคนในโปรเจคว่างตรงกัน (topK ช่วงที่ยาวที่สุดต่อวัน)
+     */
+    @GetMapping("/projects/{id}/common-free-time")
+    public ResponseEntity<CommonFreeTimeResponse> getCommonFreeTime(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "3") int topK) {
+        List<Long> participantIds = projectService.getParticipantIds(id);
+        CommonFreeTimeResponse response = new CommonFreeTimeResponse(
+                id, participantIds, timetableService.findCommonFreeTime(participantIds, Math.max(topK, 1)));
+        return ResponseEntity.ok(response);
+    }
+    
     @PostMapping("/projects/{projectId}/members/{userId}")
     public ResponseEntity<String> addMemberToProject(
             @PathVariable Long projectId,
             @PathVariable Long userId,
-            Authentication authentication) {
+            @CurrentUser AuthenticatedUser currentUser) {
         try {
-            User currentUser = userService.getUserByUsername(authentication.getName());
             Project project = projectService.getProjectById(projectId);
             
             // Check if current user is the PM of this project
@@ -72,9 +94,8 @@ public class PMController {
     public ResponseEntity<String> removeMemberFromProject(
             @PathVariable Long projectId,
             @PathVariable Long userId,
-            Authentication authentication) {
+            @CurrentUser AuthenticatedUser currentUser) {
         try {
-            User currentUser = userService.getUserByUsername(authentication.getName());
             Project project = projectService.getProjectById(projectId);
             
             // Check if current user is the PM of this project
@@ -93,9 +114,8 @@ public class PMController {
     public ResponseEntity<ProjectResponse> updateProjectStatus(
             @PathVariable Long id,
             @RequestParam String status,
-            Authentication authentication) {
+            @CurrentUser AuthenticatedUser currentUser) {
         try {
-            User currentUser = userService.getUserByUsername(authentication.getName());
             Project project = projectService.getProjectById(id);
             
             // Check if current user is the PM of this project
@@ -112,14 +132,31 @@ public class PMController {
     }
     
     @GetMapping("/students")
-    public ResponseEntity<List<User>> getAvailableStudents() {
-        List<User> students = userService.getUsersByRole(User.UserRole.STUDENT);
+    public ResponseEntity<List<StudentSummary>> getAvailableStudents() {
+        List<StudentSummary> students = userService.getStudentSummariesByRole(User.UserRole.STUDENT);
         return ResponseEntity.ok(students);
     }
     
     @GetMapping("/students/specialty/{specialty}")
-    public ResponseEntity<List<User>> getStudentsBySpecialty(@PathVariable String specialty) {
-        List<User> students = userService.getUsersBySpecialty(specialty);
+    public ResponseEntity<List<StudentSummary>> getStudentsBySpecialty(@PathVariable String specialty) {
+        List<StudentSummary> students = userService.getStudentSummariesBySpecialty(specialty);
+        return ResponseEntity.ok(students);
+    }
+
+    /**
+     * นักเรียนที่ว่างตลอดช่วงเวลาที่กำหนด เช่น
+     * GET /pm/students/free?day=Monday&start=09:00&end=11:00&specialty=Backend
+     */
+    @GetMapping("/students/free")
+    public ResponseEntity<List<StudentSummary>> getFreeStudents(
+            @RequestParam String day,
+            @RequestParam @DateTimeFormat(pattern = "HH:mm") LocalTime start,
+            @RequestParam @DateTimeFormat(pattern = "HH:mm") LocalTime end,
+            @RequestParam(required = false) String specialty) {
+        if (WeeklyAvailability.dayIndex(day) < 0 || !start.isBefore(end)) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        List<StudentSummary> students = timetableService.findFreeStudents(day, start, end, specialty);
         return ResponseEntity.ok(students);
     }
 
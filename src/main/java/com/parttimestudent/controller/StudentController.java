@@ -2,21 +2,31 @@ package com.parttimestudent.controller;
 
 import com.parttimestudent.dto.ProjectResponse;
 import com.parttimestudent.dto.RegisterRequest;
+import com.parttimestudent.dto.TimetableJobResponse;
 import com.parttimestudent.dto.TimetableResponse;
+import com.parttimestudent.dto.UserSummary;
 import com.parttimestudent.entity.Project;
-import com.parttimestudent.entity.User;
+import com.parttimestudent.security.AuthenticatedUser;
+import com.parttimestudent.security.CurrentUser;
+import com.parttimestudent.service.GeminiUnavailableException;
 import com.parttimestudent.service.ProjectService;
+import com.parttimestudent.service.ResourceVersion;
+import com.parttimestudent.service.TimetableExtractionException;
+import com.parttimestudent.service.TimetableJobService;
 import com.parttimestudent.service.TimetableService;
 import com.parttimestudent.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/student")
@@ -32,37 +42,84 @@ public class StudentController {
     @Autowired
     private ProjectService projectService;
     
+    @Autowired
+    private TimetableJobService timetableJobService;
+    
     @GetMapping("/profile")
-    public ResponseEntity<User> getProfile(Authentication authentication) {
-        User user = userService.getUserByUsername(authentication.getName());
-        return ResponseEntity.ok(user);
+    public ResponseEntity<UserSummary> getProfile(@CurrentUser AuthenticatedUser currentUser) {
+        return ResponseEntity.ok(userService.getUserSummary(currentUser.getId()));
     }
     
     @PutMapping("/profile")
-    public ResponseEntity<User> updateProfile(Authentication authentication, 
-                                             @RequestBody RegisterRequest request) {
-        User currentUser = userService.getUserByUsername(authentication.getName());
-        User updatedUser = userService.updateUser(currentUser.getId(), request);
-        return ResponseEntity.ok(updatedUser);
+    public CompletableFuture<ResponseEntity<UserSummary>> updateProfile(@CurrentUser AuthenticatedUser currentUser, 
+                                                                       @RequestBody RegisterRequest request) {
+        return userService.updateUser(currentUser.getId(), request)
+                .thenApply(updatedUser -> ResponseEntity.ok(UserSummary.from(updatedUser)));
     }
     
+    /**
+     * อัปโหลดรูปตารางเรียนแล้วรอผล โดยไม่ถือ request thread ระหว่างรอ Gemini
+     * Gemini ไม่พร้อม = 503, scheduler สำหรับบันทึกผลเต็ม = 429, แกะตารางจากรูปไม่ได้ = 422
+     * (กรณีหลังตารางเดิมจะไม่ถูกแก้)
+     */
     @PostMapping("/timetable/upload")
-    public ResponseEntity<TimetableResponse> uploadTimetable(
-            Authentication authentication,
+    public Mono<ResponseEntity<TimetableResponse>> uploadTimetable(
+            @CurrentUser AuthenticatedUser currentUser,
+            @RequestParam("file") MultipartFile file) {
+        try {
+            return timetableService.uploadTimetable(currentUser.getId(), file)
+                    .map(ResponseEntity::ok)
+                    .onErrorResume(GeminiUnavailableException.class,
+                            e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(null)))
+                    .onErrorResume(RejectedExecutionException.class,
+                            e -> Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(null)))
+                    .onErrorResume(TimetableExtractionException.class,
+                            e -> Mono.just(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(null)))
+                    .onErrorResume(IOException.class, e -> Mono.just(ResponseEntity.badRequest().body(null)));
+        } catch (IOException e) {
+            return Mono.just(ResponseEntity.badRequest().body(null));
+        }
+    }
+    
+    /**
+     * อัปโหลดรูปตารางเรียนแบบ async: คืน job id ทันที (202)
+     * แล้วให้ client poll สถานะที่ GET /student/timetable/upload/jobs/{jobId}
+     * ถ้าคิวเต็มจะตอบ 429
+     */
+    @PostMapping("/timetable/upload/jobs")
+    public ResponseEntity<TimetableJobResponse> submitTimetableUploadJob(
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestParam("file") MultipartFile file) {
         try {
-            User user = userService.getUserByUsername(authentication.getName());
-            TimetableResponse response = timetableService.uploadTimetable(user.getId(), file);
-            return ResponseEntity.ok(response);
+            TimetableJobResponse job = timetableJobService.submit(currentUser.getId(), file);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(null);
         } catch (IOException e) {
             return ResponseEntity.badRequest().body(null);
         }
     }
     
+    @GetMapping("/timetable/upload/jobs/{jobId}")
+    public ResponseEntity<TimetableJobResponse> getTimetableUploadJob(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable String jobId) {
+        TimetableJobResponse job = timetableJobService.getJob(jobId, currentUser.getId());
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+    
     @GetMapping("/timetable")
-    public ResponseEntity<TimetableResponse> getTimetable(Authentication authentication) {
-        User user = userService.getUserByUsername(authentication.getName());
-        TimetableResponse response = timetableService.getUserTimetableResponse(user.getId());
+    public ResponseEntity<TimetableResponse> getTimetable(@CurrentUser AuthenticatedUser currentUser,
+                                                          WebRequest webRequest) {
+        ResourceVersion version = timetableService.getTimetableVersion(currentUser.getId());
+        if (webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return null;
+        }
+        
+        TimetableResponse response = timetableService.getUserTimetableResponse(currentUser.getId());
         return ResponseEntity.ok(response);
     }
 
@@ -83,22 +140,18 @@ public class StudentController {
      */
     @PutMapping("/timetable")
     public ResponseEntity<TimetableResponse> updateTimetable(
-            Authentication authentication,
+            @CurrentUser AuthenticatedUser currentUser,
             @RequestBody TimetableResponse request
     ) {
-        User user = userService.getUserByUsername(authentication.getName());
-        TimetableResponse updated = timetableService.updateTimetable(user.getId(), request);
+        TimetableResponse updated = timetableService.updateTimetable(currentUser.getId(), request);
         return ResponseEntity.ok(updated);
     }
     
     @GetMapping("/projects")
-    public ResponseEntity<List<ProjectResponse>> getMyProjects(Authentication authentication) {
-        User student = userService.getUserByUsername(authentication.getName());
-        List<Project> projects = projectService.getProjectsByMember(student.getId());
+    public ResponseEntity<List<ProjectResponse>> getMyProjects(@CurrentUser AuthenticatedUser currentUser) {
+        List<Project> projects = projectService.getProjectsByMember(currentUser.getId());
 
-        List<ProjectResponse> responses = projects.stream()
-                .map(projectService::convertToResponse)
-                .collect(Collectors.toList());
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
 
         return ResponseEntity.ok(responses);
     }
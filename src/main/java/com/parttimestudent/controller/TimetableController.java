@@ -1,48 +1,107 @@
-package com.example.timetable.controller;
+package com.parttimestudent.controller;
 
-import com.example.timetable.service.MinioService;
+import com.parttimestudent.dto.TimetableJobResponse;
+import com.parttimestudent.security.AuthenticatedUser;
+import com.parttimestudent.security.CurrentUser;
+import com.parttimestudent.service.MinioService;
+import com.parttimestudent.service.TimetableJobService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * อัปโหลดรูปตารางเรียนผ่าน MinIO: presign → client PUT ตรงไปที่ MinIO → notify
+ * การดึงไฟล์และแกะตารางทำในคิวของ TimetableJobService; client poll ผลที่
+ * GET /student/timetable/upload/jobs/{jobId}
+ * ลงทะเบียนเฉพาะเมื่อตั้งค่า minio.endpoint ไว้ (เหมือน MinioService)
+ */
 @RestController
+@ConditionalOnProperty(prefix = "minio", name = "endpoint")
 @RequestMapping("/student/timetable")
 public class TimetableController {
+    private static final int MAX_BATCH_PRESIGN = 50;
+
     private final MinioService minioService;
-    // Assume you have a parser service to convert image -> slots
-    // private final TimetableParserService parser;
+    private final TimetableJobService timetableJobService;
 
-    public TimetableController(MinioService minioService) {
+    public TimetableController(MinioService minioService, TimetableJobService timetableJobService) {
         this.minioService = minioService;
+        this.timetableJobService = timetableJobService;
     }
 
-    // Legacy direct upload: backend stores to MinIO and returns parsed slots
-    @PostMapping("/upload")
-    public ResponseEntity<?> upload(@RequestParam("file") MultipartFile file) throws Exception {
-        String objectName = "timetables/" + UUID.randomUUID() + "-" + file.getOriginalFilename();
+    // Legacy direct upload: backend stores to MinIO, then queues extraction like notify
+    @PostMapping("/storage/upload")
+    public ResponseEntity<?> upload(@CurrentUser AuthenticatedUser currentUser,
+                                    @RequestParam("file") MultipartFile file) throws Exception {
+        String objectName = objectPrefix(currentUser) + UUID.randomUUID() + "-" + file.getOriginalFilename();
         minioService.upload(file, objectName);
-        // parse and return slots (omitted: integrate your parser)
-        return ResponseEntity.ok(Map.of("objectName", objectName));
+        return submit(currentUser, objectName);
     }
 
     // Presign URL for frontend direct PUT
     @PostMapping("/presign")
-    public ResponseEntity<?> presign(@RequestBody Map<String, String> body) throws Exception {
+    public ResponseEntity<?> presign(@CurrentUser AuthenticatedUser currentUser,
+                                     @RequestBody Map<String, String> body) throws Exception {
         String fileName = body.getOrDefault("fileName", "upload");
-        String objectName = "timetables/" + UUID.randomUUID() + "-" + fileName;
+        String objectName = objectPrefix(currentUser) + UUID.randomUUID() + "-" + fileName;
         String url = minioService.presignPutUrl(objectName, 3600);
         return ResponseEntity.ok(Map.of("url", url, "objectName", objectName));
     }
 
-    // After frontend PUTs to MinIO, notify backend to parse & persist
+    // Presign URLs for several files in one call: {"fileNames": ["a.jpg", "b.pdf"]}
+    @PostMapping("/presign/batch")
+    public ResponseEntity<?> presignBatch(@CurrentUser AuthenticatedUser currentUser,
+                                          @RequestBody Map<String, List<String>> body) throws Exception {
+        List<String> fileNames = body.get("fileNames");
+        if (fileNames == null || fileNames.isEmpty() || fileNames.size() > MAX_BATCH_PRESIGN) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "fileNames must contain 1-" + MAX_BATCH_PRESIGN + " entries"));
+        }
+
+        List<String> objectNames = new ArrayList<>();
+        for (String fileName : fileNames) {
+            objectNames.add(objectPrefix(currentUser) + UUID.randomUUID() + "-" + fileName);
+        }
+        Map<String, String> urls = minioService.presignPutUrls(objectNames, 3600);
+
+        List<Map<String, String>> uploads = new ArrayList<>();
+        for (int i = 0; i < fileNames.size(); i++) {
+            String objectName = objectNames.get(i);
+            uploads.add(Map.of("fileName", fileNames.get(i), "objectName", objectName, "url", urls.get(objectName)));
+        }
+        return ResponseEntity.ok(Map.of("uploads", uploads));
+    }
+
+    // After frontend PUTs to MinIO, notify backend to parse & persist (202 + job, 429 if the queue is full)
     @PostMapping("/notify")
-    public ResponseEntity<?> notifyUploaded(@RequestBody Map<String, String> body) {
+    public ResponseEntity<?> notifyUploaded(@CurrentUser AuthenticatedUser currentUser,
+                                            @RequestBody Map<String, String> body) {
         String objectName = body.get("objectName");
-        // fetch object from MinIO if needed and parse -> slots
-        // omitted: parsing logic
-        return ResponseEntity.ok(Map.of("status", "ok", "objectName", objectName));
+        // Only objects presigned for this user may be ingested into their timetable
+        if (objectName == null || !objectName.startsWith(objectPrefix(currentUser))) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown objectName"));
+        }
+        return submit(currentUser, objectName);
+    }
+
+    private ResponseEntity<?> submit(AuthenticatedUser currentUser, String objectName) {
+        try {
+            TimetableJobResponse job = timetableJobService.submitStoredObject(currentUser.getId(), objectName);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("objectName", objectName));
+        }
+    }
+
+    private String objectPrefix(AuthenticatedUser currentUser) {
+        return "timetables/" + currentUser.getId() + "/";
     }
 }
@@ -0,0 +1,27 @@
+package com.parttimestudent.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommonFreeTimeResponse {
+    private Long projectId;
+    private List<Long> participantIds;
+    // Monday..Sunday -> longest shared windows first
+    private Map<String, List<FreeWindow>> windowsByDay;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FreeWindow {
+        private String startTime;
+        private String endTime;
+        private Integer minutes;
+    }
+}
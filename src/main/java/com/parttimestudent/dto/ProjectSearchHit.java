@@ -0,0 +1,12 @@
+package com.parttimestudent.dto;
+
+/**
+ * ผลค้นหาโปรเจค (interface projection ของ native query ใน ProjectRepository.searchProjects)
+ */
+public interface ProjectSearchHit {
+    Long getId();
+    String getProjectName();
+    String getStatus();
+    Integer getDifficultyLevel();
+    Double getScore();
+}
@@ -0,0 +1,18 @@
+package com.parttimestudent.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResults<T> {
+    // Best match first
+    private List<T> items;
+    private int page;
+    private int size;
+    private long total;
+}
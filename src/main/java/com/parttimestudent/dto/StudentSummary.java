@@ -0,0 +1,19 @@
+package com.parttimestudent.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ข้อมูลนักเรียนแบบย่อสำหรับรายชื่อฝั่ง PM (เลือกคนเข้าโปรเจค)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentSummary {
+    private Long id;
+    private String customId;
+    private String firstName;
+    private String yearLevel;
+    private String specialty;
+}
@@ -0,0 +1,19 @@
+package com.parttimestudent.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimetableJobResponse {
+    private String jobId;
+    private String status; // PENDING, RUNNING, DONE, FAILED
+    private TimetableResponse result;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
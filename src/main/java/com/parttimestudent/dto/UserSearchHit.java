@@ -0,0 +1,14 @@
+package com.parttimestudent.dto;
+
+/**
+ * ผลค้นหาผู้ใช้ (interface projection ของ native query ใน UserRepository.searchUsers)
+ */
+public interface UserSearchHit {
+    Long getId();
+    String getCustomId();
+    String getFirstName();
+    String getUsername();
+    String getSpecialty();
+    String getRole();
+    Double getScore();
+}
@@ -0,0 +1,34 @@
+package com.parttimestudent.dto;
+
+import com.parttimestudent.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * ข้อมูลผู้ใช้สำหรับส่งออก API (ไม่มี password และ collection ของ entity)
+ * query ใน UserRepository สร้างตรงจาก column ด้วย constructor expression
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    private Long id;
+    private String customId;
+    private String firstName;
+    private String yearLevel;
+    private String specialty;
+    private String username;
+    private User.UserRole role;
+    private Boolean isActive;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public static UserSummary from(User user) {
+        return new UserSummary(user.getId(), user.getCustomId(), user.getFirstName(),
+                user.getYearLevel(), user.getSpecialty(), user.getUsername(),
+                user.getRole(), user.getIsActive(), user.getCreatedAt(), user.getUpdatedAt());
+    }
+}
@@ -0,0 +1,38 @@
+package com.parttimestudent.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * ผลการแกะตารางเรียนจาก Gemini ที่ cache ไว้ โดยใช้ SHA-256 ของรูป + เวอร์ชันของ prompt เป็น key
+ */
+@Entity
+@Table(name = "timetable_extraction_cache")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExtractionCacheEntry {
+    
+    @Id
+    @Column(name = "cache_key", length = 100)
+    private String cacheKey;
+    
+    @Column(name = "response_json", nullable = false, columnDefinition = "TEXT")
+    private String responseJson;
+    
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+    
+    @Column(name = "image_bytes", nullable = false)
+    private Long imageBytes;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "last_hit_at", nullable = false)
+    private LocalDateTime lastHitAt;
+}
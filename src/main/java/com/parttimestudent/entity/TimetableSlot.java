@@ -16,8 +16,10 @@ import java.time.LocalTime;
 @AllArgsConstructor
 public class TimetableSlot {
     
+    // Sequence ids (allocated 50 at a time) let Hibernate batch inserts; IDENTITY cannot
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "timetable_slots_seq")
+    @SequenceGenerator(name = "timetable_slots_seq", sequenceName = "timetable_slots_id_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
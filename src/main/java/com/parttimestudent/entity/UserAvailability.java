@@ -0,0 +1,30 @@
+package com.parttimestudent.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * รูปแบบที่บันทึกลงฐานข้อมูลของ WeeklyAvailability (bitmap ตารางว่างรายสัปดาห์ต่อ user)
+ * สร้างใหม่ทุกครั้งที่ตารางเรียนของ user ถูกบันทึก
+ */
+@Entity
+@Table(name = "user_availability")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserAvailability {
+    
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(nullable = false)
+    private byte[] bitmap;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,47 @@
+package com.parttimestudent.repository;
+
+import com.parttimestudent.entity.ExtractionCacheEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ExtractionCacheRepository extends JpaRepository<ExtractionCacheEntry, String> {
+    
+    @Modifying
+    @Query("DELETE FROM ExtractionCacheEntry e WHERE e.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+    
+    // Concurrent misses on the same image race to store the same key; the loser is a no-op (returns 0)
+    @Modifying
+    @Query(value = "INSERT INTO timetable_extraction_cache " +
+                   "(cache_key, response_json, size_bytes, image_bytes, created_at, last_hit_at) " +
+                   "VALUES (:cacheKey, :responseJson, :sizeBytes, :imageBytes, :now, :now) " +
+                   "ON CONFLICT (cache_key) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("cacheKey") String cacheKey,
+                       @Param("responseJson") String responseJson,
+                       @Param("sizeBytes") long sizeBytes,
+                       @Param("imageBytes") long imageBytes,
+                       @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("DELETE FROM ExtractionCacheEntry e WHERE e.cacheKey = :cacheKey")
+    int deleteByCacheKey(@Param("cacheKey") String cacheKey);
+    
+    @Modifying
+    @Query("UPDATE ExtractionCacheEntry e SET e.lastHitAt = :hitAt WHERE e.cacheKey = :cacheKey")
+    int touch(@Param("cacheKey") String cacheKey, @Param("hitAt") LocalDateTime hitAt);
+    
+    @Query("SELECT COALESCE(SUM(e.sizeBytes), 0) FROM ExtractionCacheEntry e")
+    long totalSizeBytes();
+    
+    // Least recently used first
+    List<ExtractionCacheEntry> findAllByOrderByLastHitAtAsc(Pageable pageable);
+}
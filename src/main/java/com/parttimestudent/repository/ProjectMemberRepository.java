@@ -3,8 +3,10 @@ package com.parttimestudent.repository;
 import com.parttimestudent.entity.ProjectMember;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,4 +25,8 @@ public interface ProjectMemberRepository extends JpaRepository<ProjectMember, Lo
     
     @Query("SELECT pm FROM ProjectMember pm WHERE pm.project.id = :projectId")
     List<ProjectMember> findMembersByProjectId(Long projectId);
+
+    // Bulk load members (with their users) for a whole page of projects in one query
+    @Query("SELECT pm FROM ProjectMember pm JOIN FETCH pm.user WHERE pm.project.id IN :projectIds ORDER BY pm.id")
+    List<ProjectMember> findWithUserByProjectIdIn(@Param("projectIds") Collection<Long> projectIds);
 }
\ No newline at end of file
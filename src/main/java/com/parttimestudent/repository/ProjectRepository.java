@@ -1,18 +1,29 @@
 package com.parttimestudent.repository;
 
+import com.parttimestudent.dto.ProjectSearchHit;
 import com.parttimestudent.entity.Project;
 import com.parttimestudent.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProjectRepository extends JpaRepository<Project, Long> {
 
+    // Fixed status lists (e.g. HELP) are read far more often than projects change; results go to the query cache
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Project> findByStatus(Project.ProjectStatus status);
 
     List<Project> findByPmUser(User pmUser);
@@ -30,6 +41,12 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
     @Query("SELECT p FROM Project p ORDER BY p.deadline ASC")
     List<Project> findAllOrderByDeadline();
 
+    // Everything that shapes a project's detail response: the project row, its PM, its member users and member count
+    @Query("SELECT p.updatedAt, pm.updatedAt, MAX(u.updatedAt), COUNT(m) FROM Project p " +
+           "LEFT JOIN p.pmUser pm LEFT JOIN p.projectMembers m LEFT JOIN m.user u " +
+           "WHERE p.id = :id GROUP BY p.id, p.updatedAt, pm.updatedAt")
+    List<Object[]> findVersionById(@Param("id") Long id);
+
     @Query("SELECT DISTINCT p FROM Project p JOIN p.projectMembers m WHERE m.user.id = :userId")
     List<Project> findByMembersId(@Param("userId") Long userId);
 
@@ -38,8 +55,105 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
 
     List<Project> findAllByOrderByProjectNameDesc();
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Project> findByStatusOrderByProjectNameAsc(Project.ProjectStatus status);
 
     @Query("SELECT p FROM Project p ORDER BY p.projectName ASC, p.deadline ASC")
     List<Project> findAllOrderByProjectNameAndDeadline();
-}
\ No newline at end of file
+
+    // Keyset pagination - seek on (sort key, id) instead of OFFSET.
+    // The Pageable only carries the page size; callers always ask for page 0.
+    // Seeks are row-value comparisons (native SQL) so Postgres starts an index range scan at the
+    // cursor; an OR-expanded predicate would scan the index from the beginning and filter.
+    // NULL deadlines sort last and are read by separate queries once the non-NULL rows run out.
+    List<Project> findAllByOrderByIdAsc(Pageable pageable);
+
+    List<Project> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    List<Project> findAllByOrderByProjectNameAscIdAsc(Pageable pageable);
+
+    @Query(value = "SELECT p.* FROM projects p WHERE (p.project_name, p.id) > (:name, :id) " +
+                   "ORDER BY p.project_name ASC, p.id ASC",
+           nativeQuery = true)
+    List<Project> findPageByNameAfter(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    List<Project> findAllByOrderByProjectNameDescIdDesc(Pageable pageable);
+
+    @Query(value = "SELECT p.* FROM projects p WHERE (p.project_name, p.id) < (:name, :id) " +
+                   "ORDER BY p.project_name DESC, p.id DESC",
+           nativeQuery = true)
+    List<Project> findPageByNameBefore(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT p FROM Project p ORDER BY p.deadline ASC NULLS LAST, p.id ASC")
+    List<Project> findPageByDeadline(Pageable pageable);
+
+    // Only rows with a deadline (the comparison is NULL otherwise); follow with findPageWithoutDeadlineAfter
+    @Query(value = "SELECT p.* FROM projects p WHERE (p.deadline, p.id) > (:deadline, :id) " +
+                   "ORDER BY p.deadline ASC, p.id ASC",
+           nativeQuery = true)
+    List<Project> findPageByDeadlineAfter(@Param("deadline") LocalDate deadline, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT p FROM Project p WHERE p.deadline IS NULL AND p.id > :id ORDER BY p.id ASC")
+    List<Project> findPageWithoutDeadlineAfter(@Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT p FROM Project p ORDER BY p.projectName ASC, p.deadline ASC NULLS LAST, p.id ASC")
+    List<Project> findPageByNameAndDeadline(Pageable pageable);
+
+    // Rest of the current name that has a deadline; then findPageByNameWithoutDeadlineAfter, then findPageByNameGreaterThan
+    @Query(value = "SELECT p.* FROM projects p WHERE p.project_name = :name " +
+                   "AND (p.deadline, p.id) > (:deadline, :id) " +
+                   "ORDER BY p.deadline ASC, p.id ASC",
+           nativeQuery = true)
+    List<Project> findPageByNameAndDeadlineAfter(@Param("name") String name, @Param("deadline") LocalDate deadline,
+                                                 @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT p FROM Project p WHERE p.projectName = :name AND p.deadline IS NULL AND p.id > :id " +
+           "ORDER BY p.id ASC")
+    List<Project> findPageByNameWithoutDeadlineAfter(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT p FROM Project p WHERE p.projectName > :name " +
+           "ORDER BY p.projectName ASC, p.deadline ASC NULLS LAST, p.id ASC")
+    List<Project> findPageByNameGreaterThan(@Param("name") String name, Pageable pageable);
+
+    // Projects whose pm_user_id/created_by the database sets to NULL when this user is deleted
+    @Query("SELECT p.id FROM Project p WHERE p.pmUser.id = :userId OR p.createdBy.id = :userId")
+    List<Long> findIdsReferencingUser(@Param("userId") Long userId);
+
+    // Row lock for read-modify-write of counted fields (status, PM, difficulty); see ProjectStatsService
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Project p WHERE p.id = :id")
+    Optional<Project> findByIdForUpdate(@Param("id") Long id);
+
+    // Aggregates for rebuilding ProjectStatsService counters
+    @Query("SELECT p.status, COUNT(p) FROM Project p GROUP BY p.status")
+    List<Object[]> countGroupByStatus();
+
+    @Query("SELECT pm.id, COUNT(p) FROM Project p LEFT JOIN p.pmUser pm GROUP BY pm.id")
+    List<Object[]> countGroupByPmUserId();
+
+    @Query("SELECT p.difficultyLevel, COUNT(p) FROM Project p GROUP BY p.difficultyLevel")
+    List<Object[]> countGroupByDifficultyLevel();
+
+    // Fuzzy search on project name (pg_trgm), prefix matches first; see idx_projects_name_trgm
+    @Query(value = "SELECT p.id AS id, p.project_name AS projectName, p.status AS status, " +
+                   "p.difficulty_level AS difficultyLevel, " +
+                   "CAST(similarity(p.project_name, :q) " +
+                   "+ CASE WHEN p.project_name ILIKE :prefix THEN 1 ELSE 0 END AS double precision) AS score " +
+                   "FROM projects p WHERE p.project_name ILIKE :prefix OR p.project_name % :q " +
+                   "ORDER BY score DESC, p.id ASC LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<ProjectSearchHit> searchProjects(@Param("q") String q, @Param("prefix") String prefix,
+                                          @Param("limit") int limit, @Param("offset") long offset);
+
+    @Query(value = "SELECT COUNT(*) FROM projects p WHERE p.project_name ILIKE :prefix OR p.project_name % :q",
+           nativeQuery = true)
+    long countSearchProjects(@Param("q") String q, @Param("prefix") String prefix);
+
+    // Forward-only cursor for exports; must be consumed inside a transaction and closed
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Project p LEFT JOIN FETCH p.pmUser ORDER BY p.id")
+    Stream<Project> streamAllWithPm();
+}
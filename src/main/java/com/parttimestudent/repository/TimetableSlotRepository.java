@@ -3,6 +3,7 @@ package com.parttimestudent.repository;
 import com.parttimestudent.entity.TimetableSlot;
 import com.parttimestudent.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -19,4 +20,9 @@ public interface TimetableSlotRepository extends JpaRepository<TimetableSlot, Lo
     List<TimetableSlot> findByUserIdAndDayOfWeek(Long userId, String dayOfWeek);
     
     void deleteByUserId(Long userId);
+    
+    // Users that have slots but no availability bitmap yet (backfill at startup)
+    @Query("SELECT DISTINCT s.user.id FROM TimetableSlot s " +
+           "WHERE s.user.id NOT IN (SELECT a.userId FROM UserAvailability a)")
+    List<Long> findUserIdsWithoutAvailability();
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.parttimestudent.repository;
+
+import com.parttimestudent.entity.UserAvailability;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface UserAvailabilityRepository extends JpaRepository<UserAvailability, Long> {
+    
+    // Changes whenever the user's timetable slots change (see AvailabilityIndex.rebuild)
+    @Query("SELECT a.updatedAt FROM UserAvailability a WHERE a.userId = :userId")
+    Optional<LocalDateTime> findUpdatedAtByUserId(@Param("userId") Long userId);
+}
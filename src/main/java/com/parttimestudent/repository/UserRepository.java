@@ -1,16 +1,35 @@
 package com.parttimestudent.repository;
 
+import com.parttimestudent.dto.StudentSummary;
+import com.parttimestudent.dto.UserSearchHit;
+import com.parttimestudent.dto.UserSummary;
 import com.parttimestudent.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     
+    // Projections: select only the columns the API returns (no password, no lazy collections)
+    String USER_SUMMARY = "SELECT new com.parttimestudent.dto.UserSummary(u.id, u.customId, u.firstName, " +
+            "u.yearLevel, u.specialty, u.username, u.role, u.isActive, u.createdAt, u.updatedAt) FROM User u ";
+    
+    String STUDENT_SUMMARY = "SELECT new com.parttimestudent.dto.StudentSummary(u.id, u.customId, u.firstName, " +
+            "u.yearLevel, u.specialty) FROM User u ";
+    
+    // Hot path for login and token resolution; the row itself then comes from the entity cache
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByUsername(String username);
     
     Optional<User> findByCustomId(String customId);
@@ -28,6 +47,55 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findByIsActive(Boolean isActive);
 
+    List<User> findByUpdatedAtAfter(LocalDateTime updatedAt);
+
+    @Query(USER_SUMMARY + "ORDER BY u.id")
+    List<UserSummary> findAllSummaries();
+
+    @Query(USER_SUMMARY + "ORDER BY u.firstName ASC")
+    List<UserSummary> findAllSummariesOrderByFirstNameAsc();
+
+    @Query(USER_SUMMARY + "ORDER BY u.firstName DESC")
+    List<UserSummary> findAllSummariesOrderByFirstNameDesc();
+
+    @Query(USER_SUMMARY + "WHERE u.id = :id")
+    Optional<UserSummary> findSummaryById(@Param("id") Long id);
+
+    @Query(STUDENT_SUMMARY + "WHERE u.role = :role ORDER BY u.id")
+    List<StudentSummary> findStudentSummariesByRole(@Param("role") User.UserRole role);
+
+    @Query(STUDENT_SUMMARY + "WHERE u.specialty = :specialty ORDER BY u.id")
+    List<StudentSummary> findStudentSummariesBySpecialty(@Param("specialty") String specialty);
+
+    @Query(STUDENT_SUMMARY + "WHERE u.id IN :ids AND u.role = :role " +
+           "AND (:specialty IS NULL OR LOWER(u.specialty) = LOWER(:specialty)) " +
+           "ORDER BY u.firstName")
+    List<StudentSummary> findStudentSummariesByIdIn(@Param("ids") Collection<Long> ids,
+                                                   @Param("role") User.UserRole role,
+                                                   @Param("specialty") String specialty);
+
+    // Fuzzy search (pg_trgm): prefix matches rank above pure similarity matches.
+    // Both ILIKE 'x%' and the % operator are served by the gin_trgm_ops indexes in database-schema.sql
+    String USER_SEARCH_MATCH =
+            "WHERE u.first_name ILIKE :prefix OR u.username ILIKE :prefix OR u.custom_id ILIKE :prefix " +
+            "OR u.specialty ILIKE :prefix " +
+            "OR u.first_name % :q OR u.username % :q OR u.custom_id % :q OR u.specialty % :q ";
+
+    @Query(value = "SELECT u.id AS id, u.custom_id AS customId, u.first_name AS firstName, " +
+                   "u.username AS username, u.specialty AS specialty, u.role AS role, " +
+                   "CAST(GREATEST(similarity(u.first_name, :q), similarity(u.username, :q), " +
+                   "similarity(u.custom_id, :q), similarity(u.specialty, :q)) " +
+                   "+ CASE WHEN u.first_name ILIKE :prefix OR u.username ILIKE :prefix " +
+                   "OR u.custom_id ILIKE :prefix THEN 1 ELSE 0 END AS double precision) AS score " +
+                   "FROM users u " + USER_SEARCH_MATCH +
+                   "ORDER BY score DESC, u.id ASC LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<UserSearchHit> searchUsers(@Param("q") String q, @Param("prefix") String prefix,
+                                    @Param("limit") int limit, @Param("offset") long offset);
+
+    @Query(value = "SELECT COUNT(*) FROM users u " + USER_SEARCH_MATCH, nativeQuery = true)
+    long countSearchUsers(@Param("q") String q, @Param("prefix") String prefix);
+
     // Sorting methods
     List<User> findAllByOrderByFirstNameAsc();
 
@@ -36,4 +104,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByRoleOrderByFirstNameAsc(User.UserRole role);
 
     List<User> findBySpecialtyOrderByFirstNameAsc(String specialty);
-}
\ No newline at end of file
+
+    // Keyset pagination - seek on (sort key, id) instead of OFFSET
+    List<User> findAllByOrderByIdAsc(Pageable pageable);
+
+    List<User> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    List<User> findAllByOrderByFirstNameAscIdAsc(Pageable pageable);
+
+    // Row-value seek so Postgres starts the idx_users_first_name_id range scan at the cursor
+    @Query(value = "SELECT u.* FROM users u WHERE (u.first_name, u.id) > (:name, :id) " +
+                   "ORDER BY u.first_name ASC, u.id ASC",
+           nativeQuery = true)
+    List<User> findPageByNameAfter(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    List<User> findAllByOrderByFirstNameDescIdDesc(Pageable pageable);
+
+    @Query(value = "SELECT u.* FROM users u WHERE (u.first_name, u.id) < (:name, :id) " +
+                   "ORDER BY u.first_name DESC, u.id DESC",
+           nativeQuery = true)
+    List<User> findPageByNameBefore(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+}
@@ -1,6 +1,8 @@
 package com.parttimestudent.security;
 
 import com.parttimestudent.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,8 +10,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -23,7 +24,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtService jwtService;
     
     @Autowired
-    private UserDetailsService userDetailsService;
+    private CustomUserDetailsService userDetailsService;
+    
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+    
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -40,16 +47,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         
         jwt = authHeader.substring(7);
-        username = jwtService.extractUsername(jwt);
+        
+        // Parse and verify the token once; the claims serve every later check
+        final Claims claims;
+        try {
+            claims = jwtService.parseToken(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        username = claims.getSubject();
         
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            AuthenticatedUser principal = resolvePrincipal(claims);
             
-            if (jwtService.validateToken(jwt, userDetails)) {
+            if (principal != null && principal.isEnabled() && jwtService.validateToken(claims, principal)) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
+                        principal,
                         null,
-                        userDetails.getAuthorities()
+                        principal.getAuthorities()
                 );
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -58,4 +74,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+    
+    /**
+     * สร้าง principal จาก claims ใน token โดยตรงถ้าทำได้ (ไม่ต้องอ่านฐานข้อมูล)
+     * ถ้าเป็น token รุ่นเก่าที่ไม่มี uid/role หรือ user ถูกแก้ไขหลังออก token
+     * จะอ่านสถานะล่าสุดผ่าน UserDetailsCache แทน
+     */
+    private AuthenticatedUser resolvePrincipal(Claims claims) {
+        Long userId = jwtService.extractUserId(claims);
+        String role = jwtService.extractRole(claims);
+        
+        if (userId != null && role != null
+                && !tokenRevocationRegistry.isStale(userId, claims.getIssuedAt())) {
+            return new AuthenticatedUser(userId, claims.getSubject(), null, role, true);
+        }
+        
+        try {
+            return (AuthenticatedUser) userDetailsCache.get(
+                    claims.getSubject(), userDetailsService::loadUserByUsername);
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.parttimestudent.security;
+
+import com.parttimestudent.entity.User;
+import com.parttimestudent.repository.UserRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * บันทึกว่า user คนไหนมีข้อมูลเปลี่ยน (role, username, ถูกลบ) ตั้งแต่เวลาใด
+ * token ที่ออกก่อนเวลานั้นจะไม่เชื่อ claims ใน token แต่กลับไปอ่านสถานะล่าสุดจากฐานข้อมูลแทน
+ * เก็บแค่ userId -> epoch second จึงมีขนาดเล็ก และตัด entry ที่เก่ากว่าอายุ token ทิ้ง
+ * ทุก entry ถูกบันทึกลงตาราง token_revocations ด้วย เพื่อให้ user ที่ถูกลบไปแล้ว
+ * (ไม่มีแถวใน users ให้ rebuild) ยังถูกปฏิเสธหลัง restart
+ */
+@Component
+public class TokenRevocationRegistry implements SmartInitializingSingleton {
+
+    private final Map<Long, Long> staleSince = new ConcurrentHashMap<>();
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${jwt.expiration}")
+    private Long expiration;
+
+    /**
+     * ถ้าเรียกภายใน transaction แถวใน token_revocations จะ commit พร้อมการเปลี่ยนแปลงของ user
+     * และ mark ซ้ำอีกครั้งหลัง commit: token ที่ออกระหว่างนี้ (ยังเห็นข้อมูลเก่า) จึงถูกนับว่า stale ด้วย
+     */
+    public void markStale(Long userId) {
+        long now = System.currentTimeMillis() / 1000;
+        staleSince.put(userId, now);
+        jdbcTemplate.update(
+                "INSERT INTO token_revocations (user_id, revoked_at) VALUES (?, ?) " +
+                "ON CONFLICT (user_id) DO UPDATE SET revoked_at = EXCLUDED.revoked_at",
+                userId, Timestamp.from(Instant.ofEpochSecond(now)));
+        prune(now);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    staleSince.merge(userId, System.currentTimeMillis() / 1000, Math::max);
+                }
+            });
+        }
+    }
+
+    public boolean isStale(Long userId, Date issuedAt) {
+        Long since = staleSince.get(userId);
+        if (since == null) {
+            return false;
+        }
+        // Tokens issued in the same second as the change are treated as stale too
+        return issuedAt == null || issuedAt.getTime() / 1000 <= since;
+    }
+
+    public int size() {
+        return staleSince.size();
+    }
+
+    /**
+     * The registry lives in memory, so rebuild it from token_revocations and from users changed
+     * within the token lifetime; older tokens have already expired. Runs after all singletons
+     * are created, before the web server starts accepting requests.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(expiration));
+        jdbcTemplate.update("DELETE FROM token_revocations WHERE revoked_at < ?", Timestamp.valueOf(cutoff));
+        jdbcTemplate.query("SELECT user_id, revoked_at FROM token_revocations", row -> {
+            long revokedAt = row.getTimestamp("revoked_at").toInstant().getEpochSecond();
+            staleSince.merge(row.getLong("user_id"), revokedAt, Math::max);
+        });
+
+        for (User user : userRepository.findByUpdatedAtAfter(cutoff)) {
+            long changedAt = user.getUpdatedAt().atZone(ZoneId.systemDefault()).toEpochSecond();
+            staleSince.merge(user.getId(), changedAt, Math::max);
+        }
+    }
+
+    private void prune(long nowSeconds) {
+        long oldest = nowSeconds - expiration / 1000;
+        staleSince.values().removeIf(since -> since < oldest);
+    }
+}
@@ -0,0 +1,84 @@
+package com.parttimestudent.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache ของ UserDetails ตาม username สำหรับ JwtAuthenticationFilter
+ * มีขนาดจำกัดและหมดอายุตาม TTL; UserService จะ evict ทันทีเมื่อข้อมูลผู้ใช้เปลี่ยน
+ */
+@Component
+public class UserDetailsCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final long ttlMillis;
+    private final int maxSize;
+
+    public UserDetailsCache(
+            @Value("${security.user-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${security.user-cache.max-size:10000}") int maxSize) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxSize = maxSize;
+    }
+
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(username);
+        if (entry != null && entry.expiresAt > now) {
+            hits.increment();
+            return entry.userDetails;
+        }
+
+        misses.increment();
+        UserDetails userDetails = loader.apply(username);
+        if (entries.size() >= maxSize) {
+            evictExpired(now);
+        }
+        if (entries.size() < maxSize) {
+            entries.put(username, new Entry(userDetails, now + ttlMillis));
+        }
+        return userDetails;
+    }
+
+    public void evict(String username) {
+        if (username != null) {
+            entries.remove(username);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private record Entry(UserDetails userDetails, long expiresAt) {
+    }
+}
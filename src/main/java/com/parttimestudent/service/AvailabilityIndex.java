@@ -0,0 +1,150 @@
+package com.parttimestudent.service;
+
+import com.parttimestudent.entity.TimetableSlot;
+import com.parttimestudent.entity.UserAvailability;
+import com.parttimestudent.repository.TimetableSlotRepository;
+import com.parttimestudent.repository.UserAvailabilityRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * เก็บ WeeklyAvailability ของทุก user ไว้ในหน่วยความจำ
+ * โหลดจากตาราง user_availability ตอนเริ่มระบบ และอัปเดตรายคนทุกครั้งที่บันทึกตารางเรียน
+ * พร้อม inverted index: แต่ละช่อง 15 นาทีของสัปดาห์ -> BitSet ของ user id ที่ว่างในช่องนั้น
+ */
+@Service
+public class AvailabilityIndex implements SmartInitializingSingleton {
+    
+    private final Map<Long, WeeklyAvailability> byUser = new ConcurrentHashMap<>();
+    
+    // slot index (day * 96 + quarter-hour) -> ids of users free in that slot
+    private final BitSet[] freeUsersBySlot = new BitSet[WeeklyAvailability.TOTAL_SLOTS];
+    private final ReadWriteLock slotLock = new ReentrantReadWriteLock();
+    
+    public AvailabilityIndex() {
+        for (int i = 0; i < freeUsersBySlot.length; i++) {
+            freeUsersBySlot[i] = new BitSet();
+        }
+    }
+    
+    @Autowired
+    private UserAvailabilityRepository userAvailabilityRepository;
+    
+    @Autowired
+    private TimetableSlotRepository timetableSlotRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    /**
+     * Runs after all singletons are created and before the web server starts accepting requests,
+     * so no query sees a half-loaded index and the backfill never races a live timetable save.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        transactionTemplate.executeWithoutResult(status -> load());
+    }
+    
+    private void load() {
+        for (UserAvailability row : userAvailabilityRepository.findAll()) {
+            put(row.getUserId(), WeeklyAvailability.fromBytes(row.getBitmap()));
+        }
+        
+        // Backfill users whose timetable was saved before the bitmap existed
+        for (Long userId : timetableSlotRepository.findUserIdsWithoutAvailability()) {
+            rebuild(userId, timetableSlotRepository.findByUserId(userId));
+        }
+    }
+    
+    /**
+     * สร้าง bitmap ใหม่ของ user จาก slot ที่เพิ่งบันทึก แล้วบันทึกลงฐานข้อมูล
+     * ต้องเรียกภายใน transaction เดียวกับการบันทึก slot; หน่วยความจำจะอัปเดตหลัง commit
+     */
+    public void rebuild(Long userId, Collection<TimetableSlot> slots) {
+        WeeklyAvailability availability = WeeklyAvailability.fromSlots(slots);
+        
+        UserAvailability row = userAvailabilityRepository.findById(userId)
+                .orElseGet(() -> {
+                    UserAvailability created = new UserAvailability();
+                    created.setUserId(userId);
+                    return created;
+                });
+        row.setBitmap(availability.toBytes());
+        row.setUpdatedAt(LocalDateTime.now());
+        userAvailabilityRepository.save(row);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(userId, availability);
+                }
+            });
+        } else {
+            put(userId, availability);
+        }
+    }
+    
+    private void put(Long userId, WeeklyAvailability availability) {
+        int bit = Math.toIntExact(userId);
+        slotLock.writeLock().lock();
+        try {
+            byUser.put(userId, availability);
+            for (int slot = 0; slot < freeUsersBySlot.length; slot++) {
+                freeUsersBySlot[slot].set(bit, availability.isFree(slot));
+            }
+        } finally {
+            slotLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * หา user ทุกคนที่ว่างตลอดช่วงเวลาที่กำหนด โดย AND BitSet ของแต่ละช่อง 15 นาทีในช่วงนั้น
+     * ไม่ต้อง query ฐานข้อมูล
+     */
+    public List<Long> findFreeUsers(String dayOfWeek, LocalTime start, LocalTime end) {
+        int day = WeeklyAvailability.dayIndex(dayOfWeek);
+        int from = WeeklyAvailability.slotFloor(start);
+        int to = WeeklyAvailability.slotCeil(end);
+        List<Long> userIds = new ArrayList<>();
+        if (day < 0 || from >= to) {
+            return userIds;
+        }
+        
+        int base = day * WeeklyAvailability.SLOTS_PER_DAY;
+        BitSet free;
+        slotLock.readLock().lock();
+        try {
+            free = (BitSet) freeUsersBySlot[base + from].clone();
+            for (int slot = base + from + 1; slot < base + to && !free.isEmpty(); slot++) {
+                free.and(freeUsersBySlot[slot]);
+            }
+        } finally {
+            slotLock.readLock().unlock();
+        }
+        
+        for (int id = free.nextSetBit(0); id >= 0; id = free.nextSetBit(id + 1)) {
+            userIds.add((long) id);
+        }
+        return userIds;
+    }
+    
+    public int size() {
+        return byUser.size();
+    }
+}
@@ -0,0 +1,73 @@
+package com.parttimestudent.service;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker แบบง่ายสำหรับ dependency ภายนอก
+ * CLOSED: เรียกได้ปกติ, ล้มเหลวติดกันครบ failureThreshold ครั้งจะเปลี่ยนเป็น OPEN
+ * OPEN: ปฏิเสธทันทีจนครบ openDuration แล้วปล่อยให้ลองได้ทีละหนึ่งคำขอ (HALF_OPEN)
+ * HALF_OPEN: สำเร็จ = กลับเป็น CLOSED, ล้มเหลว = OPEN ใหม่อีกรอบ
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+    }
+
+    /**
+     * @return false if the call must be rejected without contacting the dependency
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * เรียกเมื่อคำขอถูกยกเลิกก่อนรู้ผล เพื่อไม่ให้ HALF_OPEN ค้างรอ trial ที่ไม่มีวันจบ
+     */
+    public synchronized void onCancel() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,56 @@
+package com.parttimestudent.service;
+
+import com.parttimestudent.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * แจก custom id (TTTPnn) แบบ hi/lo: ขอเลข hi จาก sequence ครั้งละหนึ่งค่า
+ * แล้วแจกเลขในบล็อก (hi - 1) * blockSize + 1 .. hi * blockSize จากหน่วยความจำ
+ * แต่ละ node ได้บล็อกไม่ซ้ำกันจึงไม่ชนกันบน unique custom_id และไม่ต้อง scan ตาราง users
+ * เลขที่เหลือในบล็อกตอนปิดแอปจะถูกข้ามไป (id อาจไม่ต่อเนื่อง)
+ */
+@Service
+public class CustomIdAllocator {
+
+    private static final String SEQUENCE = "user_custom_id_hi_seq";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${users.custom-id.block-size:50}")
+    private int blockSize;
+
+    // เลขสูงสุดที่มีอยู่ก่อนเปลี่ยนมาใช้ sequence; อ่านครั้งเดียวแล้วข้ามเลขที่ไม่เกินค่านี้
+    private Integer floor;
+    private long next;
+    private long blockEnd;
+
+    public synchronized String nextCustomId() {
+        if (floor == null) {
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE);
+            Integer maxNumber = userRepository.findMaxCustomIdNumber();
+            floor = (maxNumber == null) ? 0 : maxNumber;
+        }
+
+        while (next == 0 || next > blockEnd || next <= floor) {
+            if (next == 0 || next > blockEnd) {
+                allocateBlock();
+            } else {
+                next = floor + 1;
+            }
+        }
+        return String.format("TTTP%02d", next++);
+    }
+
+    private void allocateBlock() {
+        Long hi = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE + "')", Long.class);
+        next = (hi - 1) * blockSize + 1;
+        blockEnd = hi * blockSize;
+    }
+}
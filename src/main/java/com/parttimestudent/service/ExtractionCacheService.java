@@ -0,0 +1,154 @@
+package com.parttimestudent.service;
+
+import com.google.gson.Gson;
+import com.parttimestudent.dto.TimetableResponse;
+import com.parttimestudent.entity.ExtractionCacheEntry;
+import com.parttimestudent.repository.ExtractionCacheRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache ถาวร (ในฐานข้อมูล) ของผลการแกะตารางเรียนจาก Gemini
+ * key = SHA-256 ของไฟล์รูป + เวอร์ชันของ prompt ทำให้รูปเดียวกันไม่ต้องเรียก Gemini ซ้ำ
+ * ลบ entry ที่เก่ากว่า max-age และลบตัวที่ไม่ได้ใช้นานที่สุดเมื่อขนาดรวมเกิน max-bytes
+ */
+@Service
+public class ExtractionCacheService {
+    
+    private static final int EVICTION_BATCH_SIZE = 100;
+    
+    private static final long EXPIRY_PURGE_INTERVAL_MILLIS = 60 * 60 * 1000L;
+    
+    @Autowired
+    private ExtractionCacheRepository extractionCacheRepository;
+    
+    @Value("${gemini.cache.max-bytes:52428800}")
+    private long maxBytes;
+    
+    @Value("${gemini.cache.max-age-days:30}")
+    private long maxAgeDays;
+    
+    private final Gson gson = new Gson();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final AtomicLong lastExpiryPurgeAt = new AtomicLong();
+    private volatile AtomicLong totalBytes;
+    
+    public String keyOf(Path imageFile, String promptVersion) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(imageFile)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest()) + ":" + promptVersion;
+    }
+    
+    @Transactional
+    public Optional<TimetableResponse> lookup(String key) {
+        Optional<ExtractionCacheEntry> entry = extractionCacheRepository.findById(key);
+        if (entry.isEmpty()) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        bytesSaved.add(entry.get().getImageBytes());
+        extractionCacheRepository.touch(key, LocalDateTime.now());
+        return Optional.of(gson.fromJson(entry.get().getResponseJson(), TimetableResponse.class));
+    }
+    
+    @Transactional
+    public void store(String key, long imageBytes, TimetableResponse response) {
+        String json = gson.toJson(response);
+        long sizeBytes = json.getBytes(StandardCharsets.UTF_8).length;
+        if (extractionCacheRepository.insertIfAbsent(key, json, sizeBytes, imageBytes, LocalDateTime.now()) == 1) {
+            totalBytes().addAndGet(sizeBytes);
+        }
+        evict();
+    }
+    
+    /**
+     * ขนาดรวมของ cache แบบ running total (ไม่ SUM ทั้งตารางทุกครั้งที่ store)
+     * ซิงก์กับฐานข้อมูลใหม่ทุกครั้งที่ล้าง entry หมดอายุ เพื่อเก็บส่วนที่ instance อื่นเขียนหรือ rollback ไป
+     */
+    private AtomicLong totalBytes() {
+        AtomicLong total = totalBytes;
+        if (total == null) {
+            synchronized (this) {
+                if (totalBytes == null) {
+                    totalBytes = new AtomicLong(extractionCacheRepository.totalSizeBytes());
+                }
+                total = totalBytes;
+            }
+        }
+        return total;
+    }
+    
+    private void evict() {
+        long now = System.currentTimeMillis();
+        long lastPurge = lastExpiryPurgeAt.get();
+        if (now - lastPurge >= EXPIRY_PURGE_INTERVAL_MILLIS && lastExpiryPurgeAt.compareAndSet(lastPurge, now)) {
+            extractionCacheRepository.deleteCreatedBefore(LocalDateTime.now().minusDays(maxAgeDays));
+            totalBytes().set(extractionCacheRepository.totalSizeBytes());
+        }
+        
+        AtomicLong total = totalBytes();
+        while (total.get() > maxBytes) {
+            List<ExtractionCacheEntry> oldest = extractionCacheRepository
+                    .findAllByOrderByLastHitAtAsc(PageRequest.of(0, EVICTION_BATCH_SIZE));
+            if (oldest.isEmpty()) {
+                break;
+            }
+            for (ExtractionCacheEntry entry : oldest) {
+                if (total.get() <= maxBytes) {
+                    break;
+                }
+                // Another store may have evicted it already; only count rows this call removed
+                if (extractionCacheRepository.deleteByCacheKey(entry.getCacheKey()) == 1) {
+                    total.addAndGet(-entry.getSizeBytes());
+                }
+            }
+        }
+    }
+    
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", (hitCount + missCount == 0) ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("bytesSaved", bytesSaved.sum());
+        return stats;
+    }
+    
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
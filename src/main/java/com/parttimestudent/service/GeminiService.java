@@ -4,14 +4,38 @@ import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.parttimestudent.dto.TimetableResponse;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class GeminiService {
@@ -22,21 +46,11 @@ public class GeminiService {
     @Value("${gemini.api.url}")
     private String apiUrl;
 
-    private final WebClient webClient;
-    private final Gson gson;
+    // Prompt for Gemini; bump PROMPT_VERSION whenever the prompt or image preprocessing
+    // changes so cached results are not reused
+    static final String PROMPT_VERSION = "v2";
 
-    public GeminiService() {
-        this.webClient = WebClient.builder().build();
-        this.gson = new Gson();
-    }
-
-    public TimetableResponse extractTimetableFromImage(MultipartFile file) throws IOException {
-        // Convert image to base64
-        String base64Image = Base64.getEncoder().encodeToString(file.getBytes());
-        String mimeType = file.getContentType();
-
-        // Create prompt for Gemini
-        String prompt = """
+    private static final String PROMPT = """
             Please analyze this timetable image and extract the schedule information.
             For each time slot, identify:
             - Day of week (Monday, Tuesday, Wednesday, Thursday, Friday, Saturday, Sunday)
@@ -68,30 +82,299 @@ public class GeminiService {
             Important: Return ONLY the JSON data, no additional text or explanation.
             """;
 
-        // Build request body for Gemini API
-        JsonObject requestBody = buildGeminiRequest(prompt, base64Image, mimeType);
+    // Placeholder swapped for the streamed base64 image when writing the request body
+    private static final String IMAGE_DATA_PLACEHOLDER = "__IMAGE_DATA__";
+
+    @Autowired
+    private ExtractionCacheService extractionCacheService;
+
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+
+    @Autowired
+    private Scheduler blockingScheduler;
+
+    // จำนวนคำขอที่ยิงไป Gemini พร้อมกันได้สูงสุด (เท่ากับขนาด connection pool)
+    @Value("${gemini.client.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${gemini.client.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    // คำขอ non-blocking ที่รอ connection ได้พร้อมกัน (รอในคิวของ pool โดยไม่ถือ thread)
+    @Value("${gemini.client.max-pending:500}")
+    private int maxPending;
+
+    // ควรน้อยกว่า overall-timeout-seconds ไม่อย่างนั้นการรอคิวจะถูกนับเป็น Gemini timeout
+    @Value("${gemini.client.pending-timeout-seconds:30}")
+    private long pendingTimeoutSeconds;
+
+    @Value("${gemini.client.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${gemini.client.attempt-timeout-seconds:30}")
+    private long attemptTimeoutSeconds;
+
+    @Value("${gemini.client.overall-timeout-seconds:90}")
+    private long overallTimeoutSeconds;
+
+    @Value("${gemini.client.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${gemini.client.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${gemini.circuit.failure-threshold:5}")
+    private int circuitFailureThreshold;
+
+    @Value("${gemini.circuit.open-seconds:30}")
+    private long circuitOpenSeconds;
+
+    private final Gson gson = new Gson();
+
+    private WebClient webClient;
+    private ConnectionProvider connectionProvider;
+    private Semaphore concurrencyLimiter;
+    private CircuitBreaker circuitBreaker;
+
+    @PostConstruct
+    void init() {
+        connectionProvider = ConnectionProvider.builder("gemini")
+                .maxConnections(maxConcurrent)
+                // Async extractions queue here for a connection without holding a thread;
+                // only an overflowing queue or an expired wait is rejected
+                .pendingAcquireMaxCount(maxPending)
+                .pendingAcquireTimeout(Duration.ofSeconds(pendingTimeoutSeconds))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofSeconds(attemptTimeoutSeconds));
+        webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+
+        concurrencyLimiter = new Semaphore(maxConcurrent);
+        circuitBreaker = new CircuitBreaker(circuitFailureThreshold, Duration.ofSeconds(circuitOpenSeconds));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        connectionProvider.dispose();
+    }
+
+    /**
+     * ใช้กับงาน async ที่เก็บไฟล์ที่อัปโหลดไว้เป็น temp file (block thread ที่เรียกจนเสร็จ)
+     *
+     * @throws TimetableExtractionException when Gemini's answer holds no usable timetable
+     * @throws GeminiUnavailableException when Gemini cannot be reached right now
+     */
+    public TimetableResponse extractTimetableFromImage(Path imageFile, String mimeType) throws IOException {
+        // Same image + same prompt = same answer; skip preprocessing and the HTTP call on a hit
+        String cacheKey = extractionCacheService.keyOf(imageFile, PROMPT_VERSION);
+        Optional<TimetableResponse> cached = extractionCacheService.lookup(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        TimetableResponse response = callGemini(imageFile, mimeType);
+        storeIfUsable(cacheKey, imageFile, response);
+        return response;
+    }
+
+    /**
+     * แบบ non-blocking: hash, cache lookup และย่อรูปทำบน blockingScheduler
+     * ส่วนการเรียก Gemini ไม่ถือ thread ระหว่างรอคำตอบ
+     */
+    public Mono<TimetableResponse> extractTimetableFromImageAsync(Path imageFile, String mimeType) {
+        return Mono.fromCallable(() -> extractionCacheService.keyOf(imageFile, PROMPT_VERSION))
+                .subscribeOn(blockingScheduler)
+                .flatMap(cacheKey -> Mono.justOrEmpty(extractionCacheService.lookup(cacheKey))
+                        .switchIfEmpty(Mono.defer(() -> callGeminiAsync(imageFile, mimeType)
+                                .publishOn(blockingScheduler)
+                                .doOnNext(response -> storeIfUsable(cacheKey, imageFile, response)))));
+    }
+
+    private void storeIfUsable(String cacheKey, Path imageFile, TimetableResponse response) {
+        try {
+            extractionCacheService.store(cacheKey, Files.size(imageFile), response);
+        } catch (IOException | DataAccessException e) {
+            // The extraction already succeeded; a cache write failure must not fail the upload
+            System.err.println("Could not cache Gemini result: " + e.getMessage());
+        }
+    }
+
+    private TimetableResponse callGemini(Path imageFile, String mimeType) throws IOException {
+        GeminiRequest request = prepareRequest(imageFile, mimeType);
+        try {
+            // Parse response
+            return parseGeminiResponse(post(request.body));
+        } finally {
+            cleanup(request);
+        }
+    }
+
+    private Mono<TimetableResponse> callGeminiAsync(Path imageFile, String mimeType) {
+        return Mono.using(
+                        () -> prepareRequest(imageFile, mimeType),
+                        request -> postAsync(request.body).defaultIfEmpty("").map(this::parseGeminiResponse),
+                        this::cleanup)
+                .subscribeOn(blockingScheduler);
+    }
+
+    private GeminiRequest prepareRequest(Path imageFile, String mimeType) throws IOException {
+        // Downscale + grayscale JPEG before sending (falls back to the original file)
+        ImagePreprocessor.PreparedImage image = imagePreprocessor.prepare(imageFile, mimeType);
+        try {
+            return new GeminiRequest(image, writeRequestBody(image));
+        } catch (IOException e) {
+            if (image.isTemporary()) {
+                deleteQuietly(image.getPath());
+            }
+            throw e;
+        }
+    }
+
+    private void cleanup(GeminiRequest request) {
+        deleteQuietly(request.body);
+        if (request.image.isTemporary()) {
+            deleteQuietly(request.image.getPath());
+        }
+    }
 
+    /**
+     * แบบ blocking: รอ slot ของ limiter ได้ไม่เกิน acquire-timeout-ms
+     * ถ้า Gemini ไม่พร้อมจะโยน GeminiUnavailableException แทนการคืนตารางว่าง
+     */
+    private String post(Path requestBody) {
+        boolean acquired;
         try {
+            acquired = concurrencyLimiter.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeminiUnavailableException("Interrupted while waiting for a Gemini slot", e);
+        }
+        if (!acquired) {
+            throw new GeminiUnavailableException("Too many concurrent Gemini calls");
+        }
+
+        try {
+            return exchange(requestBody).block();
+        } finally {
+            concurrencyLimiter.release();
+        }
+    }
+
+    /**
+     * แบบ non-blocking: ไม่ผ่าน limiter แต่ต่อคิวรอ connection ใน ConnectionProvider
+     * (ไม่เกิน max-pending คำขอ, รอไม่เกิน pending-timeout-seconds) จะถูกปฏิเสธเมื่อคิวล้นหรือรอนานเกินเท่านั้น
+     */
+    private Mono<String> postAsync(Path requestBody) {
+        return exchange(requestBody);
+    }
+
+    /**
+     * ยิงไป Gemini ผ่าน circuit breaker
+     * retry เฉพาะ 429/5xx/timeout/connection error แบบ exponential backoff + jitter
+     */
+    private Mono<String> exchange(Path requestBody) {
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return Mono.error(new GeminiUnavailableException("Gemini is degraded; failing fast until the circuit closes"));
+            }
+
             // Call Gemini 2.5 Flash API
-            String response = webClient.post()
+            return webClient.post()
                     .uri(apiUrl + "?key=" + apiKey)
-                    .header("Content-Type", "application/json")
-                    .bodyValue(requestBody.toString())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new FileSystemResource(requestBody))
                     .retrieve()
+                    // Per-attempt limit is the HttpClient responseTimeout, which starts once the
+                    // request is sent, so time spent queued for a connection is not counted
                     .bodyToMono(String.class)
-                    .block();
+                    .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(retryBackoffMs))
+                            .jitter(0.5)
+                            .filter(GeminiService::isRetryable)
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .timeout(Duration.ofSeconds(overallTimeoutSeconds))
+                    .doOnSuccess(response -> circuitBreaker.onSuccess())
+                    .doOnCancel(circuitBreaker::onCancel)
+                    .onErrorMap(this::classifyFailure);
+        });
+    }
 
-            // Parse response
-            return parseGeminiResponse(response);
+    private Throwable classifyFailure(Throwable failure) {
+        if (isPoolSaturated(failure)) {
+            // Local overload, not a Gemini failure: neither trips nor closes the circuit
+            circuitBreaker.onCancel();
+            return new GeminiUnavailableException("Too many concurrent Gemini calls", failure);
+        }
+        if (!isRetryable(failure)) {
+            // 4xx other than 429: Gemini answered, the request itself was rejected
+            circuitBreaker.onSuccess();
+            return new RuntimeException("Gemini rejected the request: " + failure.getMessage(), failure);
+        }
+        circuitBreaker.onFailure();
+        System.err.println("Gemini call failed: " + failure.getMessage());
+        return new GeminiUnavailableException("Gemini is unavailable: " + failure.getMessage(), failure);
+    }
+
+    private static boolean isRetryable(Throwable failure) {
+        if (isPoolSaturated(failure)) {
+            return false;
+        }
+        if (failure instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return failure instanceof TimeoutException || failure instanceof WebClientRequestException;
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error calling Gemini API: " + e.getMessage());
-            e.printStackTrace();
+    /**
+     * @return true if no connection could be had because the pending queue overflowed or the wait expired;
+     *         reactor-netty raises PoolAcquirePendingLimitException / PoolAcquireTimeoutException from its
+     *         shaded pool package, so they are matched by name rather than type
+     */
+    private static boolean isPoolSaturated(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            String name = cause.getClass().getSimpleName();
+            if (name.equals("PoolAcquirePendingLimitException") || name.equals("PoolAcquireTimeoutException")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * เขียน JSON request ลง temp file โดย base64-encode รูปแบบ streaming
+     * ไม่ต้องสร้าง String base64 ทั้งก้อนในหน่วยความจำ
+     */
+    private Path writeRequestBody(ImagePreprocessor.PreparedImage image) throws IOException {
+        String envelope = buildGeminiRequest(PROMPT, IMAGE_DATA_PLACEHOLDER, image.getMimeType()).toString();
+        int split = envelope.indexOf(IMAGE_DATA_PLACEHOLDER);
+
+        Path body = Files.createTempFile("gemini-request-", ".json");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(body))) {
+            out.write(envelope.substring(0, split).getBytes(StandardCharsets.UTF_8));
+            try (OutputStream base64 = Base64.getEncoder().wrap(StreamUtils.nonClosing(out))) {
+                Files.copy(image.getPath(), base64);
+            }
+            out.write(envelope.substring(split + IMAGE_DATA_PLACEHOLDER.length()).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            deleteQuietly(body);
+            throw e;
+        }
+        return body;
+    }
 
-            // Return empty timetable if error occurs
-            TimetableResponse emptyResponse = new TimetableResponse();
-            emptyResponse.setSlots(new ArrayList<>());
-            return emptyResponse;
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Could not delete temp file " + path + ": " + e.getMessage());
         }
     }
 
@@ -121,34 +404,57 @@ public class GeminiService {
         return request;
     }
 
+    /**
+     * @throws TimetableExtractionException if the answer is malformed or contains no slots;
+     *         an empty result must never reach saveTimetableFromResponse (it would wipe the stored timetable)
+     */
     private TimetableResponse parseGeminiResponse(String response) {
+        TimetableResponse timetable;
         try {
             JsonObject jsonResponse = gson.fromJson(response, JsonObject.class);
-            JsonArray candidates = jsonResponse.getAsJsonArray("candidates");
+            JsonArray candidates = (jsonResponse != null) ? jsonResponse.getAsJsonArray("candidates") : null;
+            if (candidates == null || candidates.size() == 0) {
+                throw new TimetableExtractionException("Gemini returned no candidates");
+            }
 
-            if (candidates != null && candidates.size() > 0) {
-                JsonObject candidate = candidates.get(0).getAsJsonObject();
-                JsonObject content = candidate.getAsJsonObject("content");
-                JsonArray parts = content.getAsJsonArray("parts");
+            JsonObject candidate = candidates.get(0).getAsJsonObject();
+            JsonObject content = candidate.getAsJsonObject("content");
+            JsonArray parts = (content != null) ? content.getAsJsonArray("parts") : null;
+            if (parts == null || parts.size() == 0) {
+                throw new TimetableExtractionException("Gemini returned no content");
+            }
 
-                if (parts != null && parts.size() > 0) {
-                    String text = parts.get(0).getAsJsonObject().get("text").getAsString();
+            String text = parts.get(0).getAsJsonObject().get("text").getAsString();
 
-                    // Clean up the response (remove markdown code blocks if present)
-                    text = text.replaceAll("```json\\s*", "").replaceAll("```\\s*", "").trim();
+            // Clean up the response (remove markdown code blocks if present)
+            text = text.replaceAll("```json\\s*", "").replaceAll("```\\s*", "").trim();
 
-                    // Parse the timetable JSON
-                    return gson.fromJson(text, TimetableResponse.class);
-                }
+            // Parse the timetable JSON
+            timetable = gson.fromJson(text, TimetableResponse.class);
+        } catch (TimetableExtractionException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new TimetableExtractionException("Could not parse Gemini response: " + e.getMessage(), e);
+        }
+
+        if (timetable == null || timetable.getSlots() == null || timetable.getSlots().isEmpty()) {
+            throw new TimetableExtractionException("No timetable slots found in the image");
+        }
+        for (TimetableResponse.TimeSlot slot : timetable.getSlots()) {
+            if (slot == null || slot.getDayOfWeek() == null || slot.getStartTime() == null || slot.getEndTime() == null) {
+                throw new TimetableExtractionException("Gemini returned an incomplete timetable slot");
             }
-        } catch (Exception e) {
-            System.err.println("Error parsing Gemini response: " + e.getMessage());
-            e.printStackTrace();
         }
+        return timetable;
+    }
 
-        // Return empty timetable if parsing fails
-        TimetableResponse emptyResponse = new TimetableResponse();
-        emptyResponse.setSlots(new ArrayList<>());
-        return emptyResponse;
+    private static class GeminiRequest {
+        private final ImagePreprocessor.PreparedImage image;
+        private final Path body;
+
+        private GeminiRequest(ImagePreprocessor.PreparedImage image, Path body) {
+            this.image = image;
+            this.body = body;
+        }
     }
 }
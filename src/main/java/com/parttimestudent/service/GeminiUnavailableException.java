@@ -0,0 +1,16 @@
+package com.parttimestudent.service;
+
+/**
+ * Gemini ใช้งานไม่ได้ชั่วคราว (timeout, 429/5xx หลัง retry, circuit เปิดอยู่ หรือคิวเต็ม)
+ * controller ควรตอบ 503 ให้ client ลองใหม่ภายหลัง
+ */
+public class GeminiUnavailableException extends RuntimeException {
+
+    public GeminiUnavailableException(String message) {
+        super(message);
+    }
+
+    public GeminiUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,140 @@
+package com.parttimestudent.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * เตรียมรูปตารางเรียนก่อนส่งให้ Gemini: ย่อให้ด้านยาวสุดไม่เกิน max-dimension
+ * แล้วแปลงเป็น grayscale JPEG รูปมือถือ 8-12 MB จะเหลือไม่กี่ร้อย KB
+ * ไฟล์ที่อ่านไม่ได้ (เช่น PDF) จะส่งไฟล์ต้นฉบับไปตามเดิม
+ */
+@Service
+public class ImagePreprocessor {
+
+    @Value("${gemini.image.max-dimension:1600}")
+    private int maxDimension;
+
+    @Value("${gemini.image.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    @Data
+    @AllArgsConstructor
+    public static class PreparedImage {
+        private Path path;
+        private String mimeType;
+        // true = temp file ที่ผู้เรียกต้องลบเอง
+        private boolean temporary;
+    }
+
+    public PreparedImage prepare(Path source, String mimeType) {
+        PreparedImage original = new PreparedImage(source, mimeType, false);
+        Path output = null;
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) {
+                return original;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return original;
+            }
+
+            ImageReader reader = readers.next();
+            BufferedImage decoded;
+            try {
+                reader.setInput(in, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+
+                // Subsample while decoding so the full-resolution raster never lands on the heap
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longestSide / maxDimension);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+
+            BufferedImage gray = toGrayscale(decoded);
+            output = Files.createTempFile("gemini-image-", ".jpg");
+            writeJpeg(gray, output);
+
+            // Small or already-compressed uploads can come out larger; keep whichever is smaller
+            if (Files.size(output) >= Files.size(source)) {
+                Files.deleteIfExists(output);
+                return original;
+            }
+            return new PreparedImage(output, "image/jpeg", true);
+
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Image preprocessing failed, sending original: " + e.getMessage());
+            deleteQuietly(output);
+            return original;
+        }
+    }
+
+    private BufferedImage toGrayscale(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage gray = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        try {
+            // Transparent PNG areas would otherwise turn black
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetWidth, targetHeight);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return gray;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Could not delete temp image " + path + ": " + e.getMessage());
+        }
+    }
+}
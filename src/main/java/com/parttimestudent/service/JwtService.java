@@ -1,9 +1,12 @@
 package com.parttimestudent.service;
 
+import com.parttimestudent.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -13,7 +16,6 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
 @Service
 public class JwtService {
@@ -24,34 +26,53 @@ public class JwtService {
     @Value("${jwt.expiration}")
     private Long expiration;
     
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    
+    // Built once at startup; both are immutable and thread-safe
+    private Key signKey;
+    private JwtParser jwtParser;
+    
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        this.signKey = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signKey)
+                .build();
     }
     
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    /**
+     * Parse และตรวจ signature ของ token เพียงครั้งเดียว
+     * claims ที่ได้ใช้ต่อได้ทั้งการดึง username และการตรวจวันหมดอายุ
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, tampered with or expired
+     */
+    public Claims parseToken(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
     }
     
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    /**
+     * @return the user id claim, or null for tokens issued before ids were embedded
+     */
+    public Long extractUserId(Claims claims) {
+        Object userId = claims.get(CLAIM_USER_ID);
+        return (userId instanceof Number number) ? number.longValue() : null;
     }
     
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public String extractRole(Claims claims) {
+        return claims.get(CLAIM_ROLE, String.class);
     }
     
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
     
-    public String generateToken(String username) {
+    public String generateToken(User user) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, username);
+        claims.put(CLAIM_USER_ID, user.getId());
+        claims.put(CLAIM_ROLE, user.getRole().name());
+        return createToken(claims, user.getUsername());
     }
     
     private String createToken(Map<String, Object> claims, String username) {
@@ -60,17 +81,12 @@ public class JwtService {
                 .setSubject(username)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
+                .signWith(signKey, SignatureAlgorithm.HS256)
                 .compact();
     }
     
-    private Key getSignKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-    
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    public Boolean validateToken(Claims claims, UserDetails userDetails) {
+        final String username = claims.getSubject();
+        return (username.equals(userDetails.getUsername()) && !isTokenExpired(claims));
     }
-}
\ No newline at end of file
+}
@@ -1,67 +1,266 @@
-package com.example.timetable.service;
-
-import io.minio.GetPresignedObjectUrlArgs;
-import io.minio.MinioClient;
-import io.minio.PutObjectArgs;
-import io.minio.http.Method;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-
-import java.io.InputStream;
-import java.util.concurrent.TimeUnit;
-
-@Service
-public class MinioService {
-    private final MinioClient minioClient;
-    private final String bucket;
-
-    public MinioService(
-            @Value("${minio.endpoint}") String endpoint,
-            @Value("${minio.port:9000}") int port,
-            @Value("${minio.use-ssl:false}") boolean useSsl,
-            @Value("${minio.access-key}") String accessKey,
-            @Value("${minio.secret-key}") String secretKey,
-            @Value("${minio.bucket}") String bucket) {
-        // Construct full endpoint with protocol and port
-        String fullEndpoint = constructEndpoint(endpoint, port, useSsl);
-        
-        this.minioClient = MinioClient.builder()
-                .endpoint(fullEndpoint)
-                .credentials(accessKey, secretKey)
-                .build();
-        this.bucket = bucket;
-    }
-
-    private String constructEndpoint(String endpoint, int port, boolean useSsl) {
-        String protocol = useSsl ? "https" : "http";
-        String defaultPort = (useSsl && port == 443) || (!useSsl && port == 80) ? "" : (":" + port);
-        return protocol + "://" + endpoint + defaultPort;
-    }
-
-    public String upload(MultipartFile file, String objectName) throws Exception {
-        try (InputStream is = file.getInputStream()) {
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(bucket)
-                            .object(objectName)
-                            .stream(is, file.getSize(), -1)
-                            .contentType(file.getContentType())
-                            .build()
-            );
-        }
-        // Return object identifier (objectName). URL exposure depends on your infra.
-        return objectName;
-    }
-
-    public String presignPutUrl(String objectName, int expirySeconds) throws Exception {
-        return minioClient.getPresignedObjectUrl(
-                GetPresignedObjectUrlArgs.builder()
-                        .method(Method.PUT)
-                        .bucket(bucket)
-                        .object(objectName)
-                        .expiry(expirySeconds, TimeUnit.SECONDS)
-                        .build()
-        );
-    }
-}
+package com.parttimestudent.service;
+
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.http.Method;
+import io.minio.messages.Part;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Object storage is optional: without minio.endpoint the app boots without the MinIO upload routes
+@Service
+@ConditionalOnProperty(prefix = "minio", name = "endpoint")
+public class MinioService {
+    // S3 minimum size for every part except the last one
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private final MinioClient minioClient;
+    private final MultipartMinioClient multipartClient;
+    private final String bucket;
+    private final String region;
+    private final long multipartThreshold;
+    private final long partSize;
+    private final ExecutorService partUploadExecutor;
+
+    public MinioService(
+            @Value("${minio.endpoint}") String endpoint,
+            @Value("${minio.port:9000}") int port,
+            @Value("${minio.use-ssl:false}") boolean useSsl,
+            @Value("${minio.access-key}") String accessKey,
+            @Value("${minio.secret-key}") String secretKey,
+            @Value("${minio.bucket}") String bucket,
+            @Value("${minio.region:us-east-1}") String region,
+            @Value("${minio.multipart.threshold-bytes:16777216}") long multipartThreshold,
+            @Value("${minio.multipart.part-size-bytes:8388608}") long partSize,
+            @Value("${minio.multipart.parallelism:4}") int parallelism) {
+        // Construct full endpoint with protocol and port
+        String fullEndpoint = constructEndpoint(endpoint, port, useSsl);
+        
+        // A fixed region skips the GetBucketLocation round trip before the first signature,
+        // so presigning is pure local HMAC work with the static credentials held by the client
+        this.minioClient = MinioClient.builder()
+                .endpoint(fullEndpoint)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .build();
+        this.multipartClient = new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(fullEndpoint)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .build());
+        this.bucket = bucket;
+        this.region = region;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.partUploadExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "minio-part-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        partUploadExecutor.shutdown();
+    }
+
+    private String constructEndpoint(String endpoint, int port, boolean useSsl) {
+        String protocol = useSsl ? "https" : "http";
+        String defaultPort = (useSsl && port == 443) || (!useSsl && port == 80) ? "" : (":" + port);
+        return protocol + "://" + endpoint + defaultPort;
+    }
+
+    /**
+     * ไฟล์เล็กส่งเป็น PUT เดียว, ไฟล์ใหญ่ (เช่น PDF สแกน) แบ่งเป็น part แล้วส่งพร้อมกันหลาย thread
+     * ทุก PUT แนบ Content-MD5 ให้ MinIO ตรวจว่าข้อมูลไม่เสียระหว่างทาง
+     */
+    public String upload(MultipartFile file, String objectName) throws Exception {
+        Path spooled = Files.createTempFile("minio-upload-", ".part");
+        try {
+            file.transferTo(spooled);
+            long size = Files.size(spooled);
+            if (size <= multipartThreshold) {
+                putRange(spooled, 0, size, objectName, file.getContentType());
+            } else {
+                uploadParallel(spooled, size, objectName, file.getContentType());
+            }
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+        // Return object identifier (objectName). URL exposure depends on your infra.
+        return objectName;
+    }
+
+    /**
+     * S3 multipart upload: ส่งแต่ละช่วงของไฟล์เป็น part พร้อมกันหลาย thread แล้ว complete
+     * server ต่อ part เป็น object เดียวโดยไม่ copy ข้อมูลซ้ำ และไม่มี object ชั่วคราวใน prefix ของ user
+     * เมื่อล้มเหลว part ที่ยังไม่เริ่มจะถูกข้าม รอ part ที่กำลังส่งให้จบ แล้ว abort upload (ลบทุก part)
+     * ถ้า JVM ตายก่อน abort, upload ที่ค้างจะมองไม่เห็นเป็น object และ MinIO ลบทิ้งเองเมื่อเกิน
+     * stale uploads expiry (ค่าเริ่มต้น 24 ชม.); บน S3 ให้ตั้ง lifecycle rule AbortIncompleteMultipartUpload
+     */
+    private void uploadParallel(Path source, long size, String objectName, String contentType) throws Exception {
+        String uploadId = multipartClient.startUpload(bucket, region, objectName, contentType);
+        List<Future<Part>> uploads = new ArrayList<>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        boolean completed = false;
+
+        try {
+            for (long offset = 0; offset < size; offset += partSize) {
+                long start = offset;
+                long length = Math.min(partSize, size - offset);
+                int partNumber = uploads.size() + 1;
+                uploads.add(partUploadExecutor.submit(() -> {
+                    if (aborted.get()) {
+                        return null;
+                    }
+                    String contentMd5 = md5Base64(source, start, length);
+                    return multipartClient.uploadPart(bucket, region, objectName, uploadId, partNumber,
+                            source, start, length, contentMd5);
+                }));
+            }
+            Part[] parts = new Part[uploads.size()];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = uploads.get(i).get();
+            }
+
+            multipartClient.completeUpload(bucket, region, objectName, uploadId, parts);
+            completed = true;
+        } finally {
+            if (!completed) {
+                // Future.cancel cannot stop a PUT already on the wire and its get() would return
+                // at once, so skip the queued parts and wait for every started one before aborting;
+                // a part that lands after the abort would otherwise keep its storage
+                aborted.set(true);
+                for (Future<Part> upload : uploads) {
+                    awaitQuietly(upload);
+                }
+                try {
+                    multipartClient.abortUpload(bucket, region, objectName, uploadId);
+                } catch (Exception e) {
+                    System.err.println("Could not abort multipart upload " + uploadId + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void awaitQuietly(Future<?> upload) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                upload.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | CancellationException e) {
+                break; // a failed part already made the upload loop throw
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void putRange(Path source, long offset, long length, String objectName, String contentType) throws Exception {
+        String contentMd5 = md5Base64(source, offset, length);
+        try (InputStream in = Files.newInputStream(source)) {
+            in.skipNBytes(offset);
+            PutObjectArgs.Builder put = PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(objectName)
+                    // part size >= length keeps this a single PUT so Content-MD5 covers the whole body
+                    .stream(in, length, Math.max(length, MIN_PART_SIZE))
+                    .headers(Map.of("Content-MD5", contentMd5));
+            if (contentType != null) {
+                put.contentType(contentType);
+            }
+            minioClient.putObject(put.build());
+        }
+    }
+
+    private String md5Base64(Path source, long offset, long length) throws Exception {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(source)) {
+            in.skipNBytes(offset);
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file while hashing " + source);
+                }
+                md5.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        return Base64.getEncoder().encodeToString(md5.digest());
+    }
+
+    public String presignPutUrl(String objectName, int expirySeconds) throws Exception {
+        return minioClient.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(Method.PUT)
+                        .bucket(bucket)
+                        .object(objectName)
+                        .expiry(expirySeconds, TimeUnit.SECONDS)
+                        .build()
+        );
+    }
+
+    /**
+     * เซ็น URL สำหรับหลายไฟล์ในครั้งเดียว (ไม่มี network round trip; เซ็นในเครื่องทั้งหมด)
+     *
+     * @return objectName -> presigned PUT URL, in the order given
+     */
+    public Map<String, String> presignPutUrls(List<String> objectNames, int expirySeconds) throws Exception {
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            urls.put(objectName, presignPutUrl(objectName, expirySeconds));
+        }
+        return urls;
+    }
+
+    /**
+     * Stream object ลงไฟล์ปลายทางโดยตรง (ไม่โหลดทั้งก้อนเข้า heap)
+     *
+     * @return the object's Content-Type, or null if MinIO did not report one
+     */
+    public String download(String objectName, Path target) throws Exception {
+        try (GetObjectResponse object = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(objectName)
+                        .build())) {
+            Files.copy(object, target, StandardCopyOption.REPLACE_EXISTING);
+            return object.headers().get("Content-Type");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.parttimestudent.service;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.UploadPartResponse;
+import io.minio.messages.Part;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+/**
+ * เปิดใช้ S3 multipart upload API (protected ใน MinIO SDK) ให้ MinioService
+ * ส่งแต่ละ part เข้า multipart upload เดียวกันได้เอง แทนการสร้าง object ชั่วคราวแล้ว compose
+ */
+class MultipartMinioClient extends MinioAsyncClient {
+
+    MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * @return the upload id
+     */
+    String startUpload(String bucket, String region, String object, String contentType) throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        return createMultipartUploadAsync(bucket, region, object, headers, null).get().result().uploadId();
+    }
+
+    /**
+     * Stream [offset, offset + length) of the file as one part; the server checks it against contentMd5.
+     */
+    Part uploadPart(String bucket, String region, String object, String uploadId, int partNumber,
+                    Path source, long offset, long length, String contentMd5) throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+        headers.put("Content-MD5", contentMd5);
+        try (RandomAccessFile file = new RandomAccessFile(source.toFile(), "r")) {
+            file.seek(offset);
+            UploadPartResponse response = uploadPartAsync(
+                    bucket, region, object, file, length, uploadId, partNumber, headers, null).get();
+            return new Part(partNumber, response.etag());
+        }
+    }
+
+    void completeUpload(String bucket, String region, String object, String uploadId, Part[] parts) throws Exception {
+        completeMultipartUploadAsync(bucket, region, object, uploadId, parts, null, null).get();
+    }
+
+    void abortUpload(String bucket, String region, String object, String uploadId) throws Exception {
+        abortMultipartUploadAsync(bucket, region, object, uploadId, null, null).get();
+    }
+}
@@ -0,0 +1,87 @@
+package com.parttimestudent.service;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque token for keyset (seek) pagination.
+ * เก็บชื่อการเรียงลำดับและค่า sort key ของแถวสุดท้ายในหน้า แล้วเข้ารหัสเป็น base64url
+ */
+public final class PageCursor {
+
+    private static final Gson GSON = new Gson();
+
+    private final String sort;
+    private final List<String> keys;
+
+    private PageCursor(String sort, List<String> keys) {
+        this.sort = sort;
+        this.keys = keys;
+    }
+
+    public static String encode(String sort, String... keys) {
+        List<String> values = new ArrayList<>();
+        values.add(sort);
+        values.addAll(Arrays.asList(keys));
+        byte[] json = GSON.toJson(values).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+    }
+
+    /**
+     * @return the decoded cursor, or null when no token was given (first page)
+     * @throws IllegalArgumentException if the token is malformed or was issued for another sort
+     */
+    public static PageCursor decode(String token, String expectedSort) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        List<String> values;
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            values = GSON.fromJson(json, new TypeToken<List<String>>() {}.getType());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (values == null || values.isEmpty() || !expectedSort.equals(values.get(0))) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
+        }
+        return new PageCursor(values.get(0), values.subList(1, values.size()));
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public String getString(int index) {
+        return value(index);
+    }
+
+    public Long getLong(int index) {
+        String value = value(index);
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    public LocalDate getDate(int index) {
+        String value = value(index);
+        try {
+            return value == null ? null : LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private String value(int index) {
+        if (index >= keys.size()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return keys.get(index);
+    }
+}
@@ -0,0 +1,81 @@
+package com.parttimestudent.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ทำ BCrypt บน thread pool ขนาดเท่าจำนวน core แทน request thread
+ * คิวมีขนาดจำกัด ถ้าเต็มจะโยน RejectedExecutionException (controller ตอบ 503)
+ * ช่วง login พร้อมกันเยอะ ๆ จึงไม่กิน CPU จน request อื่นทำงานไม่ได้
+ */
+@Service
+public class PasswordHashingService {
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHashingService(
+            @Value("${security.bcrypt.strength:10}") int strength,
+            @Value("${security.bcrypt.threads:0}") int threads,
+            @Value("${security.bcrypt.queue-capacity:200}") int queueCapacity) {
+        this.strength = strength;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @throws RejectedExecutionException when the hashing queue is full
+     */
+    public CompletableFuture<String> encodeAsync(String rawPassword) {
+        return CompletableFuture.supplyAsync(() -> passwordEncoder.encode(rawPassword), executor);
+    }
+
+    /**
+     * @throws RejectedExecutionException when the hashing queue is full
+     */
+    public CompletableFuture<Boolean> matchesAsync(String rawPassword, String encodedPassword) {
+        return CompletableFuture.supplyAsync(() -> passwordEncoder.matches(rawPassword, encodedPassword), executor);
+    }
+
+    /**
+     * hash ที่ cost ไม่ตรงกับ security.bcrypt.strength (สูงหรือต่ำกว่า) ควร rehash หลัง login สำเร็จ
+     */
+    public boolean needsRehash(String encodedPassword) {
+        // BCrypt format: $2a$10$<salt+hash>
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(3) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
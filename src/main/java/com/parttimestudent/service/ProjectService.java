@@ -1,23 +1,46 @@
 package com.parttimestudent.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.parttimestudent.dto.CursorPage;
 import com.parttimestudent.dto.ProjectRequest;
 import com.parttimestudent.dto.ProjectResponse;
+import com.parttimestudent.dto.ProjectSearchHit;
+import com.parttimestudent.dto.SearchResults;
 import com.parttimestudent.entity.Project;
 import com.parttimestudent.entity.ProjectMember;
 import com.parttimestudent.entity.User;
 import com.parttimestudent.repository.ProjectMemberRepository;
 import com.parttimestudent.repository.ProjectRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ProjectService {
     
+    public static final int MAX_PAGE_SIZE = 200;
+    
+    private static final int EXPORT_CHUNK_SIZE = 200;
+    
     @Autowired
     private ProjectRepository projectRepository;
     
@@ -27,6 +50,15 @@ public class ProjectService {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private ProjectStatsService projectStatsService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
     @Transactional
     public Project createProject(ProjectRequest request, Long createdById) {
         User createdBy = userService.getUserById(createdById);
@@ -46,6 +78,7 @@ public class ProjectService {
             // Update PM role
             if (pmUser.getRole() == User.UserRole.STUDENT) {
                 pmUser.setRole(User.UserRole.PM);
+                userService.invalidateAuthentication(pmUser);
             }
         }
         
@@ -55,7 +88,9 @@ public class ProjectService {
         project.setStartDate(startDate);
         project.setDeadline(startDate.plusDays(request.getDurationDays()));
         
-        return projectRepository.save(project);
+        Project saved = projectRepository.save(project);
+        projectStatsService.record(null, ProjectStatsService.Counted.of(saved));
+        return saved;
     }
     
     public Project getProjectById(Long id) {
@@ -63,9 +98,19 @@ public class ProjectService {
                 .orElseThrow(() -> new RuntimeException("Project not found"));
     }
     
+    /**
+     * ล็อกแถวของโปรเจคไว้จนจบ transaction: ค่าเดิมที่ส่งให้ ProjectStatsService ต้องไม่ถูกอ่านซ้อนกัน
+     * (สอง request ที่เปลี่ยน status พร้อมกันจะลดตัวนับของ status เดิมสองครั้ง)
+     */
+    private Project getProjectForUpdate(Long id) {
+        return projectRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new RuntimeException("Project not found"));
+    }
+    
     @Transactional
     public Project updateProject(Long id, ProjectRequest request) {
-        Project project = getProjectById(id);
+        Project project = getProjectForUpdate(id);
+        ProjectStatsService.Counted before = ProjectStatsService.Counted.of(project);
         
         project.setProjectName(request.getProjectName());
         project.setDifficultyLevel(request.getDifficultyLevel());
@@ -77,6 +122,7 @@ public class ProjectService {
             
             if (pmUser.getRole() == User.UserRole.STUDENT) {
                 pmUser.setRole(User.UserRole.PM);
+                userService.invalidateAuthentication(pmUser);
             }
         }
         
@@ -85,20 +131,27 @@ public class ProjectService {
             project.setDeadline(request.getStartDate().plusDays(request.getDurationDays()));
         }
         
-        return projectRepository.save(project);
+        Project saved = projectRepository.save(project);
+        projectStatsService.record(before, ProjectStatsService.Counted.of(saved));
+        return saved;
     }
     
     @Transactional
     public Project updateProjectStatus(Long id, String status) {
-        Project project = getProjectById(id);
+        Project project = getProjectForUpdate(id);
+        ProjectStatsService.Counted before = ProjectStatsService.Counted.of(project);
         project.setStatus(Project.ProjectStatus.valueOf(status));
-        return projectRepository.save(project);
+        Project saved = projectRepository.save(project);
+        projectStatsService.record(before, ProjectStatsService.Counted.of(saved));
+        return saved;
     }
     
     @Transactional
     public void deleteProject(Long id) {
-        Project project = getProjectById(id);
+        Project project = getProjectForUpdate(id);
+        ProjectStatsService.Counted before = ProjectStatsService.Counted.of(project);
         projectRepository.delete(project);
+        projectStatsService.record(before, null);
     }
     
     @Transactional
@@ -116,6 +169,9 @@ public class ProjectService {
         member.setUser(user);
         
         projectMemberRepository.save(member);
+        
+        // Membership is part of the project's response; bump its version for ETag/Last-Modified
+        project.setUpdatedAt(LocalDateTime.now());
     }
     
     @Transactional
@@ -125,6 +181,36 @@ public class ProjectService {
         }
         
         projectMemberRepository.deleteByProjectIdAndUserId(projectId, userId);
+        getProjectById(projectId).setUpdatedAt(LocalDateTime.now());
+    }
+    
+    /**
+     * เวอร์ชันของ response รายละเอียดโปรเจค (ใช้ทำ ETag) ด้วย query aggregate เดียว
+     * ไม่โหลด member และไม่สร้าง ProjectResponse
+     */
+    public ResourceVersion getProjectVersion(Long projectId) {
+        List<Object[]> rows = projectRepository.findVersionById(projectId);
+        if (rows.isEmpty()) {
+            throw new RuntimeException("Project not found");
+        }
+        Object[] row = rows.get(0);
+        return ResourceVersion.of("p" + projectId + "-" + row[3],
+                (LocalDateTime) row[0], (LocalDateTime) row[1], (LocalDateTime) row[2]);
+    }
+    
+    /**
+     * id ของ PM และสมาชิกทุกคนในโปรเจค (ไม่ซ้ำกัน)
+     */
+    public List<Long> getParticipantIds(Long projectId) {
+        Project project = getProjectById(projectId);
+        Set<Long> ids = new LinkedHashSet<>();
+        if (project.getPmUser() != null) {
+            ids.add(project.getPmUser().getId());
+        }
+        for (ProjectMember member : projectMemberRepository.findByProjectId(projectId)) {
+            ids.add(member.getUser().getId());
+        }
+        return new ArrayList<>(ids);
     }
     
     public List<Project> getAllProjects() {
@@ -184,37 +270,210 @@ public class ProjectService {
         return projectRepository.findAllOrderByProjectNameAndDeadline();
     }
 
+    /**
+     * Keyset pagination ของรายการโปรเจค รองรับ sortBy เดียวกับ GET /admin/projects
+     * (name, deadline, nameAndDeadline หรือไม่ระบุ = เรียงตาม id)
+     */
+    public CursorPage<Project> getProjectsPage(String sortBy, String order, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // Fetch one extra row to know whether another page exists
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        
+        String sort;
+        if ("name".equalsIgnoreCase(sortBy)) {
+            sort = "desc".equalsIgnoreCase(order) ? "name:desc" : "name:asc";
+        } else if ("deadline".equalsIgnoreCase(sortBy)) {
+            sort = "deadline";
+        } else if ("nameAndDeadline".equalsIgnoreCase(sortBy)) {
+            sort = "nameAndDeadline";
+        } else {
+            sort = "id";
+        }
+        PageCursor after = PageCursor.decode(cursor, sort);
+        
+        List<Project> projects;
+        switch (sort) {
+            case "name:asc" -> projects = (after == null)
+                    ? projectRepository.findAllByOrderByProjectNameAscIdAsc(pageable)
+                    : projectRepository.findPageByNameAfter(after.getString(0), after.getLong(1), pageable);
+            case "name:desc" -> projects = (after == null)
+                    ? projectRepository.findAllByOrderByProjectNameDescIdDesc(pageable)
+                    : projectRepository.findPageByNameBefore(after.getString(0), after.getLong(1), pageable);
+            case "deadline" -> {
+                if (after == null) {
+                    projects = projectRepository.findPageByDeadline(pageable);
+                } else if (after.getDate(0) == null) {
+                    projects = projectRepository.findPageWithoutDeadlineAfter(after.getLong(1), pageable);
+                } else {
+                    projects = new ArrayList<>(projectRepository.findPageByDeadlineAfter(
+                            after.getDate(0), after.getLong(1), pageable));
+                    // NULL deadlines come last
+                    fillPage(projects, limit + 1, rest -> projectRepository.findPageWithoutDeadlineAfter(0L, rest));
+                }
+            }
+            case "nameAndDeadline" -> {
+                if (after == null) {
+                    projects = projectRepository.findPageByNameAndDeadline(pageable);
+                } else {
+                    String name = after.getString(0);
+                    projects = new ArrayList<>();
+                    if (after.getDate(1) != null) {
+                        fillPage(projects, limit + 1, rest -> projectRepository.findPageByNameAndDeadlineAfter(
+                                name, after.getDate(1), after.getLong(2), rest));
+                    }
+                    // Then the same name without a deadline, then the following names
+                    long idAfter = (after.getDate(1) == null) ? after.getLong(2) : 0L;
+                    fillPage(projects, limit + 1, rest -> projectRepository.findPageByNameWithoutDeadlineAfter(
+                            name, idAfter, rest));
+                    fillPage(projects, limit + 1, rest -> projectRepository.findPageByNameGreaterThan(name, rest));
+                }
+            }
+            default -> projects = (after == null)
+                    ? projectRepository.findAllByOrderByIdAsc(pageable)
+                    : projectRepository.findByIdGreaterThanOrderByIdAsc(after.getLong(0), pageable);
+        }
+        
+        if (projects.size() <= limit) {
+            return new CursorPage<>(projects, null);
+        }
+        
+        List<Project> items = new ArrayList<>(projects.subList(0, limit));
+        Project last = items.get(limit - 1);
+        String id = String.valueOf(last.getId());
+        String deadline = (last.getDeadline() != null) ? last.getDeadline().toString() : null;
+        String nextCursor = switch (sort) {
+            case "name:asc", "name:desc" -> PageCursor.encode(sort, last.getProjectName(), id);
+            case "deadline" -> PageCursor.encode(sort, deadline, id);
+            case "nameAndDeadline" -> PageCursor.encode(sort, last.getProjectName(), deadline, id);
+            default -> PageCursor.encode(sort, id);
+        };
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    /**
+     * เติมหน้าต่อจาก segment ถัดไปของ keyset (เช่นส่วนที่ deadline เป็น NULL) เฉพาะเมื่อหน้ายังไม่เต็ม
+     */
+    private void fillPage(List<Project> page, int wanted, Function<Pageable, List<Project>> nextSegment) {
+        if (page.size() < wanted) {
+            page.addAll(nextSegment.apply(PageRequest.of(0, wanted - page.size())));
+        }
+    }
+    
+    /**
+     * ค้นหาโปรเจคจากชื่อ แบบ prefix และแบบพิมพ์ผิดได้ (pg_trgm) เรียงตามความใกล้เคียง
+     *
+     * @throws IllegalArgumentException when the query or page is invalid
+     */
+    @Transactional(readOnly = true)
+    public SearchResults<ProjectSearchHit> searchProjects(String q, int page, int size) {
+        String term = SearchTerms.normalize(q);
+        String prefix = SearchTerms.prefixPattern(term);
+        int limit = SearchTerms.pageSize(size);
+        int pageNumber = SearchTerms.page(page);
+        
+        List<ProjectSearchHit> items = projectRepository.searchProjects(term, prefix, limit, (long) pageNumber * limit);
+        long total = projectRepository.countSearchProjects(term, prefix);
+        return new SearchResults<>(items, pageNumber, limit, total);
+    }
+
+    /**
+     * Export ทุกโปรเจคพร้อม PM และสมาชิกเป็น NDJSON (หนึ่งบรรทัดต่อหนึ่งโปรเจค)
+     * อ่านจาก cursor แบบ forward-only ทีละ chunk แล้ว clear persistence context
+     * ใช้หน่วยความจำคงที่ไม่ว่าจะมีกี่โปรเจค
+     */
+    @Transactional(readOnly = true)
+    public void exportProjects(OutputStream out) throws IOException {
+        List<Project> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        try (Stream<Project> projects = projectRepository.streamAllWithPm()) {
+            Iterator<Project> iterator = projects.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == EXPORT_CHUNK_SIZE) {
+                    writeExportChunk(chunk, out);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeExportChunk(chunk, out);
+        }
+    }
+    
+    private void writeExportChunk(List<Project> chunk, OutputStream out) throws IOException {
+        for (ProjectResponse response : convertToResponses(chunk)) {
+            out.write(objectMapper.writeValueAsBytes(response));
+            out.write('\n');
+        }
+        out.flush();
+        chunk.clear();
+        // Detach everything read so far so the session does not grow with the export
+        entityManager.clear();
+    }
+
     public ProjectResponse convertToResponse(Project project) {
-        ProjectResponse response = new ProjectResponse();
-        response.setId(project.getId());
-        response.setProjectName(project.getProjectName());
-        response.setDifficultyLevel(project.getDifficultyLevel());
-        response.setDurationDays(project.getDurationDays());
-        response.setStatus(project.getStatus().name());
-        response.setStartDate(project.getStartDate());
-        response.setDeadline(project.getDeadline());
-        response.setCreatedAt(project.getCreatedAt());
-        response.setUpdatedAt(project.getUpdatedAt());
-        
-        // Set PM info
-        if (project.getPmUser() != null) {
-            User pm = project.getPmUser();
-            response.setPmUser(new ProjectResponse.PmInfo(
-                    pm.getId(), pm.getCustomId(), pm.getFirstName(), pm.getUsername()));
-        }
-        
-        // Set members info
-        List<ProjectMember> members = projectMemberRepository.findByProjectId(project.getId());
-        List<ProjectResponse.MemberInfo> memberInfos = members.stream()
-                .map(member -> {
-                    User user = member.getUser();
-                    return new ProjectResponse.MemberInfo(
-                            user.getId(), user.getCustomId(), 
-                            user.getFirstName(), user.getSpecialty());
-                })
-                .collect(Collectors.toList());
-        response.setMembers(memberInfos);
+        return convertToResponses(List.of(project)).get(0);
+    }
+
+    /**
+     * แปลง Project หลายตัวเป็น ProjectResponse พร้อมกัน
+     * โหลด member (พร้อม user) และ PM ของทั้งชุดด้วยจำนวน query คงที่ ไม่ว่าจะมีกี่โปรเจค
+     */
+    public List<ProjectResponse> convertToResponses(List<Project> projects) {
+        if (projects.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Set<Long> projectIds = new LinkedHashSet<>();
+        Set<Long> pmIds = new LinkedHashSet<>();
+        for (Project project : projects) {
+            projectIds.add(project.getId());
+            if (project.getPmUser() != null) {
+                pmIds.add(project.getPmUser().getId());
+            }
+        }
+        
+        // 1 query: members of every project, with their users fetched
+        Map<Long, List<ProjectResponse.MemberInfo>> membersByProject = new HashMap<>();
+        for (ProjectMember member : projectMemberRepository.findWithUserByProjectIdIn(projectIds)) {
+            User user = member.getUser();
+            membersByProject
+                    .computeIfAbsent(member.getProject().getId(), id -> new ArrayList<>())
+                    .add(new ProjectResponse.MemberInfo(
+                            user.getId(), user.getCustomId(),
+                            user.getFirstName(), user.getSpecialty()));
+        }
+        
+        // 1 query: every PM referenced by the page
+        Map<Long, User> pmById = pmIds.isEmpty() ? Map.of() :
+                userService.getUsersByIds(pmIds).stream()
+                        .collect(Collectors.toMap(User::getId, Function.identity()));
+        
+        List<ProjectResponse> responses = new ArrayList<>(projects.size());
+        for (Project project : projects) {
+            ProjectResponse response = new ProjectResponse();
+            response.setId(project.getId());
+            response.setProjectName(project.getProjectName());
+            response.setDifficultyLevel(project.getDifficultyLevel());
+            response.setDurationDays(project.getDurationDays());
+            response.setStatus(project.getStatus().name());
+            response.setStartDate(project.getStartDate());
+            response.setDeadline(project.getDeadline());
+            response.setCreatedAt(project.getCreatedAt());
+            response.setUpdatedAt(project.getUpdatedAt());
+            
+            // Set PM info
+            if (project.getPmUser() != null) {
+                User pm = pmById.get(project.getPmUser().getId());
+                if (pm != null) {
+                    response.setPmUser(new ProjectResponse.PmInfo(
+                            pm.getId(), pm.getCustomId(), pm.getFirstName(), pm.getUsername()));
+                }
+            }
+            
+            // Set members info
+            response.setMembers(membersByProject.getOrDefault(project.getId(), new ArrayList<>()));
+            responses.add(response);
+        }
         
-        return response;
+        return responses;
     }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package com.parttimestudent.service;
+
+import com.parttimestudent.entity.Project;
+import com.parttimestudent.repository.ProjectRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ตัวนับจำนวนโปรเจคแยกตาม status, PM และ difficulty เก็บในหน่วยความจำ
+ * โหลดด้วย GROUP BY ตอนเริ่มระบบ แล้วปรับทีละโปรเจคหลัง commit ของ ProjectService
+ * dashboard อ่านได้ทันทีโดยไม่ต้อง scan ตาราง projects
+ * ProjectService ล็อกแถวโปรเจค (PESSIMISTIC_WRITE) ก่อนอ่านค่าเดิม การแก้พร้อมกันจึงไม่ทำให้ตัวนับเพี้ยน
+ * ตัวนับเป็นของแต่ละ instance: เห็นเฉพาะการแก้ไขที่ผ่าน instance นี้หลังโหลด
+ */
+@Service
+public class ProjectStatsService implements SmartInitializingSingleton {
+
+    // Key for projects without a PM in byPm
+    private static final long NO_PM = 0L;
+
+    private final Map<Project.ProjectStatus, LongAdder> byStatus = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> byPm = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> byDifficulty = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    /**
+     * ค่าที่ใช้นับของโปรเจคหนึ่งตัว ต้องจับไว้ก่อนแก้ entity เพราะ entity เป็น object เดียวกันหลังแก้
+     */
+    public record Counted(Project.ProjectStatus status, Long pmUserId, Integer difficultyLevel) {
+
+        public static Counted of(Project project) {
+            Long pmUserId = (project.getPmUser() != null) ? project.getPmUser().getId() : null;
+            return new Counted(project.getStatus(), pmUserId, project.getDifficultyLevel());
+        }
+    }
+
+    /**
+     * Runs after all singletons are created and before the web server starts accepting requests,
+     * so no delta can be recorded against counters that are about to be replaced.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<Project.ProjectStatus, Long> statusCounts = new LinkedHashMap<>();
+        for (Object[] row : projectRepository.countGroupByStatus()) {
+            statusCounts.put((Project.ProjectStatus) row[0], (Long) row[1]);
+        }
+        Map<Long, Long> pmCounts = new LinkedHashMap<>();
+        for (Object[] row : projectRepository.countGroupByPmUserId()) {
+            pmCounts.put(row[0] == null ? NO_PM : ((Number) row[0]).longValue(), (Long) row[1]);
+        }
+        Map<Integer, Long> difficultyCounts = new LinkedHashMap<>();
+        for (Object[] row : projectRepository.countGroupByDifficultyLevel()) {
+            difficultyCounts.put((Integer) row[0], (Long) row[1]);
+        }
+
+        reset(byStatus, statusCounts);
+        reset(byPm, pmCounts);
+        reset(byDifficulty, difficultyCounts);
+        total.reset();
+        total.add(statusCounts.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    private static <K> void reset(Map<K, LongAdder> counters, Map<K, Long> counts) {
+        counters.clear();
+        counts.forEach((key, count) -> counter(counters, key).add(count));
+    }
+
+    /**
+     * บันทึกการเปลี่ยนแปลงของโปรเจคหนึ่งตัว (before = null คือสร้างใหม่, after = null คือลบ)
+     * ต้องเรียกภายใน transaction ที่แก้โปรเจค; ตัวนับจะปรับหลัง commit เท่านั้น rollback จึงไม่ทำให้เพี้ยน
+     */
+    public void record(Counted before, Counted after) {
+        afterCommit(() -> apply(before, after));
+    }
+
+    /**
+     * ลบ user ที่เป็น PM แล้วฐานข้อมูลตั้ง pm_user_id เป็น NULL (ON DELETE SET NULL)
+     * ย้ายจำนวนของ PM คนนั้นไปเป็นโปรเจคที่ไม่มี PM หลัง commit
+     */
+    public void pmRemoved(Long pmUserId) {
+        afterCommit(() -> {
+            LongAdder removed = byPm.remove(pmUserId);
+            if (removed != null) {
+                counter(byPm, NO_PM).add(removed.sum());
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private void apply(Counted before, Counted after) {
+        if (before != null) {
+            counter(byStatus, before.status()).decrement();
+            counter(byPm, pmKey(before)).decrement();
+            counter(byDifficulty, before.difficultyLevel()).decrement();
+            total.decrement();
+        }
+        if (after != null) {
+            counter(byStatus, after.status()).increment();
+            counter(byPm, pmKey(after)).increment();
+            counter(byDifficulty, after.difficultyLevel()).increment();
+            total.increment();
+        }
+    }
+
+    private static long pmKey(Counted counted) {
+        return (counted.pmUserId() != null) ? counted.pmUserId() : NO_PM;
+    }
+
+    private static <K> LongAdder counter(Map<K, LongAdder> counters, K key) {
+        return counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Long> status = new LinkedHashMap<>();
+        for (Project.ProjectStatus value : Project.ProjectStatus.values()) {
+            LongAdder counter = byStatus.get(value);
+            status.put(value.name(), (counter != null) ? counter.sum() : 0L);
+        }
+
+        Map<Long, Long> pm = new TreeMap<>();
+        byPm.forEach((pmUserId, counter) -> {
+            long count = counter.sum();
+            if (pmUserId != NO_PM && count > 0) {
+                pm.put(pmUserId, count);
+            }
+        });
+        LongAdder unassigned = byPm.get(NO_PM);
+
+        Map<Integer, Long> difficulty = new TreeMap<>();
+        byDifficulty.forEach((level, counter) -> {
+            long count = counter.sum();
+            if (count > 0) {
+                difficulty.put(level, count);
+            }
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", total.sum());
+        stats.put("byStatus", status);
+        stats.put("byPm", pm);
+        stats.put("withoutPm", (unassigned != null) ? unassigned.sum() : 0L);
+        stats.put("byDifficulty", difficulty);
+        return stats;
+    }
+}
@@ -0,0 +1,37 @@
+package com.parttimestudent.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * เวอร์ชันของ response สำหรับ conditional GET (ETag + Last-Modified)
+ * คำนวณจาก timestamp ในฐานข้อมูลโดยไม่ต้องโหลดหรือ serialize ข้อมูลจริง
+ */
+@Data
+@AllArgsConstructor
+public class ResourceVersion {
+
+    // Weak ETag: the body is equivalent, not byte-for-byte identical
+    private String etag;
+
+    // Epoch millis, or -1 when unknown
+    private long lastModified;
+
+    /**
+     * @param key identifies the resource and anything else that changes the body (e.g. member count)
+     * @param timestamps the newest of these becomes Last-Modified; nulls are ignored
+     */
+    public static ResourceVersion of(String key, LocalDateTime... timestamps) {
+        LocalDateTime newest = null;
+        for (LocalDateTime timestamp : timestamps) {
+            if (timestamp != null && (newest == null || timestamp.isAfter(newest))) {
+                newest = timestamp;
+            }
+        }
+        long lastModified = newest == null ? -1 : newest.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new ResourceVersion("W/\"" + key + "-" + lastModified + "\"", lastModified);
+    }
+}
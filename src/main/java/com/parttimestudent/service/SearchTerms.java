@@ -0,0 +1,46 @@
+package com.parttimestudent.service;
+
+/**
+ * เตรียมคำค้นสำหรับ native search query (ILIKE prefix + pg_trgm similarity)
+ */
+final class SearchTerms {
+
+    static final int MAX_QUERY_LENGTH = 100;
+    static final int MAX_PAGE_SIZE = 50;
+
+    private SearchTerms() {
+    }
+
+    /**
+     * @throws IllegalArgumentException when the query is blank or too long
+     */
+    static String normalize(String q) {
+        String term = (q == null) ? "" : q.trim().replaceAll("\\s+", " ");
+        if (term.isEmpty()) {
+            throw new IllegalArgumentException("Search query must not be empty");
+        }
+        if (term.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query must be at most " + MAX_QUERY_LENGTH + " characters");
+        }
+        return term;
+    }
+
+    // Escape LIKE wildcards so user input only ever matches literally (Postgres default escape is '\')
+    static String prefixPattern(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the page number is negative
+     */
+    static int page(int page) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Page must not be negative");
+        }
+        return page;
+    }
+}
@@ -0,0 +1,16 @@
+package com.parttimestudent.service;
+
+/**
+ * Gemini ตอบกลับมาแล้วแต่แกะตารางเรียนไม่ได้ (JSON ผิดรูปแบบหรือไม่มี slot เลย)
+ * ต้องไม่บันทึกผลนี้ทับตารางเดิม; controller ควรตอบ 422 ให้ผู้ใช้ส่งรูปที่ชัดกว่าเดิม
+ */
+public class TimetableExtractionException extends RuntimeException {
+
+    public TimetableExtractionException(String message) {
+        super(message);
+    }
+
+    public TimetableExtractionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
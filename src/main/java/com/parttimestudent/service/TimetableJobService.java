@@ -0,0 +1,195 @@
+package com.parttimestudent.service;
+
+import com.parttimestudent.dto.TimetableJobResponse;
+import com.parttimestudent.dto.TimetableResponse;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * งานแกะตารางเรียนจากรูปแบบ async
+ * request คืน job id ทันที ส่วนการเรียก Gemini และการบันทึกทำใน worker pool ที่มีขนาดและคิวจำกัด
+ * จึงไม่ถือ Tomcat thread หรือ database connection ไว้ระหว่างรอ Gemini
+ */
+@Service
+public class TimetableJobService {
+    
+    @Autowired
+    private GeminiService geminiService;
+    
+    @Autowired
+    private TimetableService timetableService;
+    
+    // Absent when MinIO is not configured; only TimetableController (same condition) submits stored objects
+    @Autowired(required = false)
+    private MinioService minioService;
+    
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    
+    public TimetableJobService(
+            @Value("${timetable.jobs.workers:4}") int workers,
+            @Value("${timetable.jobs.queue-capacity:100}") int queueCapacity,
+            @Value("${timetable.jobs.retention-minutes:60}") long retentionMinutes) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "timetable-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retention = Duration.ofMinutes(retentionMinutes);
+    }
+    
+    /**
+     * เก็บไฟล์ลง temp file แล้วส่งเข้าคิว
+     *
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public TimetableJobResponse submit(Long userId, MultipartFile file) throws IOException {
+        evictFinishedJobs();
+        
+        // The multipart temp file is removed when the request ends, so keep our own copy
+        Path imageFile = Files.createTempFile("timetable-job-", ".upload");
+        try {
+            file.transferTo(imageFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(imageFile);
+            throw e;
+        }
+        
+        Job job = new Job(UUID.randomUUID().toString(), userId);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, imageFile, file.getContentType()));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            Files.deleteIfExists(imageFile);
+            throw e;
+        }
+        return job.toResponse();
+    }
+    
+    /**
+     * ส่งงานแกะตารางเรียนจากไฟล์ที่ client PUT ขึ้น MinIO ไว้แล้ว (presigned upload)
+     * worker จะ stream object ลง temp file เองในคิว ไม่ผ่าน request thread
+     *
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public TimetableJobResponse submitStoredObject(Long userId, String objectName) {
+        evictFinishedJobs();
+        
+        Job job = new Job(UUID.randomUUID().toString(), userId);
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> runStoredObject(job, objectName));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job.toResponse();
+    }
+    
+    /**
+     * @return the job, or null if it does not exist, has expired or belongs to another user
+     */
+    public TimetableJobResponse getJob(String jobId, Long userId) {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.userId.equals(userId)) {
+            return null;
+        }
+        return job.toResponse();
+    }
+    
+    private void run(Job job, Path imageFile, String mimeType) {
+        job.status = "RUNNING";
+        try {
+            TimetableResponse extracted = geminiService.extractTimetableFromImage(imageFile, mimeType);
+            job.result = timetableService.saveTimetableFromResponse(job.userId, extracted);
+            job.finishedAt = LocalDateTime.now();
+            job.status = "DONE";
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.finishedAt = LocalDateTime.now();
+            job.status = "FAILED";
+        } finally {
+            try {
+                Files.deleteIfExists(imageFile);
+            } catch (IOException e) {
+                System.err.println("Could not delete temp file " + imageFile + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void runStoredObject(Job job, String objectName) {
+        job.status = "RUNNING";
+        Path imageFile = null;
+        String mimeType;
+        try {
+            imageFile = Files.createTempFile("timetable-job-", ".upload");
+            mimeType = minioService.download(objectName, imageFile);
+        } catch (Exception e) {
+            job.error = "Could not fetch " + objectName + ": " + e.getMessage();
+            job.finishedAt = LocalDateTime.now();
+            job.status = "FAILED";
+            if (imageFile != null) {
+                try {
+                    Files.deleteIfExists(imageFile);
+                } catch (IOException ex) {
+                    System.err.println("Could not delete temp file " + imageFile + ": " + ex.getMessage());
+                }
+            }
+            return;
+        }
+        run(job, imageFile, mimeType);
+    }
+    
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+    
+    private static class Job {
+        private final String id;
+        private final Long userId;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile String status = "PENDING";
+        private volatile TimetableResponse result;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+        
+        private Job(String id, Long userId) {
+            this.id = id;
+            this.userId = userId;
+        }
+        
+        private TimetableJobResponse toResponse() {
+            return new TimetableJobResponse(id, status, result, error, createdAt, finishedAt);
+        }
+    }
+}
@@ -1,18 +1,37 @@
 package com.parttimestudent.service;
 
+import com.parttimestudent.dto.CommonFreeTimeResponse;
+import com.parttimestudent.dto.StudentSummary;
 import com.parttimestudent.dto.TimetableResponse;
 import com.parttimestudent.entity.TimetableSlot;
 import com.parttimestudent.entity.User;
+import com.parttimestudent.entity.UserAvailability;
 import com.parttimestudent.repository.TimetableSlotRepository;
+import com.parttimestudent.repository.UserAvailabilityRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,43 +46,119 @@ public class TimetableService {
     @Autowired
     private UserService userService;
     
-    @Transactional
-    public TimetableResponse uploadTimetable(Long userId, MultipartFile file) throws IOException {
-        // Extract timetable from image using Gemini
-        TimetableResponse timetableResponse = geminiService.extractTimetableFromImage(file);
-        
-        // Persist extracted slots and return the latest timetable
-        return saveTimetableFromResponse(userId, timetableResponse);
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+    
+    @Autowired
+    private UserAvailabilityRepository userAvailabilityRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private Scheduler blockingScheduler;
+    
+    /**
+     * อัปโหลดรูปตารางเรียนแบบ non-blocking: ย้ายไฟล์ลง temp file แล้วให้ Gemini แกะโดยไม่ถือ thread
+     * การบันทึกลงฐานข้อมูลทำบน blockingScheduler ภายใน transaction ของตัวเอง
+     * (ไม่ถือ DB connection ไว้ระหว่างรอ Gemini)
+     */
+    public Mono<TimetableResponse> uploadTimetable(Long userId, MultipartFile file) throws IOException {
+        // Multipart is already parsed by the servlet container; transferTo is usually just a move
+        Path imageFile = Files.createTempFile("timetable-upload-", ".upload");
+        try {
+            file.transferTo(imageFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(imageFile);
+            throw e;
+        }
+
+        return geminiService.extractTimetableFromImageAsync(imageFile, file.getContentType())
+                .publishOn(blockingScheduler)
+                .map(extracted -> transactionTemplate.execute(status -> saveTimetableFromResponse(userId, extracted)))
+                .doFinally(signal -> {
+                    try {
+                        Files.deleteIfExists(imageFile);
+                    } catch (IOException e) {
+                        System.err.println("Could not delete temp file " + imageFile + ": " + e.getMessage());
+                    }
+                });
     }
 
     /**
      * ใช้ร่วมกันทั้งตอนอัปโหลดจากรูป และตอนแก้ไขตารางเรียนแบบ manual
-     * ลบ slot เดิมของ user แล้วบันทึก slot ใหม่ทั้งหมดตามข้อมูลใน TimetableResponse
+     * เทียบ slot ใหม่กับของเดิมแล้วเขียนเฉพาะส่วนที่ต่าง: slot ที่ช่วงเวลาตรงกันจะถูกใช้ต่อ
+     * (อัปเดตเฉพาะ subject/isFree ที่เปลี่ยน), ที่เหลือ insert หรือ delete เป็น batch
+     * ถ้าบันทึกตารางเดิมซ้ำจะไม่มีการเขียนลงฐานข้อมูลเลย
      */
     @Transactional
     public TimetableResponse saveTimetableFromResponse(Long userId, TimetableResponse timetableResponse) {
+        // Missing slots would otherwise delete every stored slot
+        if (timetableResponse == null || timetableResponse.getSlots() == null) {
+            throw new IllegalArgumentException("Timetable slots are required");
+        }
         User user = userService.getUserById(userId);
         
-        // Delete existing timetable slots for this user
-        timetableSlotRepository.deleteByUserId(userId);
+        // Existing slots keyed by day + time range
+        Map<String, Deque<TimetableSlot>> existingByTime = new HashMap<>();
+        for (TimetableSlot existing : timetableSlotRepository.findByUserId(userId)) {
+            existingByTime
+                    .computeIfAbsent(timeKey(existing.getDayOfWeek(), existing.getStartTime(), existing.getEndTime()),
+                            key -> new ArrayDeque<>())
+                    .add(existing);
+        }
         
-        // Save new timetable slots
         DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+        List<TimetableSlot> savedSlots = new ArrayList<>();
+        List<TimetableSlot> inserts = new ArrayList<>();
+        boolean updated = false;
         
         for (TimetableResponse.TimeSlot slot : timetableResponse.getSlots()) {
-            TimetableSlot timetableSlot = new TimetableSlot();
-            timetableSlot.setUser(user);
-            timetableSlot.setDayOfWeek(slot.getDayOfWeek());
-            timetableSlot.setStartTime(LocalTime.parse(slot.getStartTime(), timeFormatter));
-            timetableSlot.setEndTime(LocalTime.parse(slot.getEndTime(), timeFormatter));
-            timetableSlot.setSubject(slot.getSubject());
-            timetableSlot.setIsFree(slot.getIsFree());
+            LocalTime startTime = LocalTime.parse(slot.getStartTime(), timeFormatter);
+            LocalTime endTime = LocalTime.parse(slot.getEndTime(), timeFormatter);
+            Deque<TimetableSlot> matches = existingByTime.get(timeKey(slot.getDayOfWeek(), startTime, endTime));
+            TimetableSlot timetableSlot = (matches != null) ? matches.poll() : null;
             
-            timetableSlotRepository.save(timetableSlot);
+            if (timetableSlot == null) {
+                timetableSlot = new TimetableSlot();
+                timetableSlot.setUser(user);
+                timetableSlot.setDayOfWeek(slot.getDayOfWeek());
+                timetableSlot.setStartTime(startTime);
+                timetableSlot.setEndTime(endTime);
+                timetableSlot.setSubject(slot.getSubject());
+                timetableSlot.setIsFree(slot.getIsFree());
+                inserts.add(timetableSlot);
+            } else if (!Objects.equals(timetableSlot.getSubject(), slot.getSubject())
+                    || !Objects.equals(timetableSlot.getIsFree(), slot.getIsFree())) {
+                // Managed entity: dirty checking flushes this as a batched UPDATE
+                timetableSlot.setSubject(slot.getSubject());
+                timetableSlot.setIsFree(slot.getIsFree());
+                updated = true;
+            }
+            savedSlots.add(timetableSlot);
+        }
+        
+        // Whatever was not matched no longer exists in the new timetable
+        List<TimetableSlot> deletes = new ArrayList<>();
+        existingByTime.values().forEach(deletes::addAll);
+        
+        if (!deletes.isEmpty()) {
+            timetableSlotRepository.deleteAllInBatch(deletes);
+        }
+        if (!inserts.isEmpty()) {
+            timetableSlotRepository.saveAll(inserts);
+        }
+        
+        // Keep the weekly availability bitmap in step with the stored slots
+        if (updated || !inserts.isEmpty() || !deletes.isEmpty()) {
+            availabilityIndex.rebuild(userId, savedSlots);
         }
         
-        // ดึงข้อมูลล่าสุดจากฐานข้อมูลกลับมาเป็น response มาตรฐาน
-        return getUserTimetableResponse(userId);
+        return toTimetableResponse(savedSlots);
+    }
+    
+    private String timeKey(String dayOfWeek, LocalTime startTime, LocalTime endTime) {
+        return dayOfWeek + "|" + startTime + "|" + endTime;
     }
 
     /**
@@ -87,9 +182,75 @@ public class TimetableService {
         return timetableSlotRepository.findByUserIdAndIsFree(userId, false);
     }
     
-    public TimetableResponse getUserTimetableResponse(Long userId) {
-        List<TimetableSlot> slots = getUserTimetable(userId);
+    /**
+     * นักเรียนทุกคนที่ว่างตลอดช่วงเวลาที่กำหนด (กรอง specialty ได้)
+     * ตอบจาก inverted index ใน AvailabilityIndex แล้วโหลดข้อมูล user ด้วย query เดียว
+     */
+    public List<StudentSummary> findFreeStudents(String dayOfWeek, LocalTime start, LocalTime end, String specialty) {
+        List<Long> userIds = availabilityIndex.findFreeUsers(dayOfWeek, start, end);
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return userService.getStudentSummariesByIds(userIds, specialty);
+    }
+    
+    /**
+     * หาช่วงเวลาว่างที่ทุกคนในรายชื่อว่างตรงกัน แยกตามวัน คืน topK ช่วงที่ยาวที่สุดของแต่ละวัน
+     * โหลด bitmap ของทุกคนจากตาราง user_availability ด้วย query เดียว (ถูกต้องทุก pod ไม่ขึ้นกับ index ในหน่วยความจำ)
+     * แล้ว AND กันและไล่หาช่วงช่อง 15 นาทีที่ว่างต่อเนื่อง
+     * bitmap หักคาบเรียนออกแล้ว (class wins) จึงไม่รายงานช่วงที่ทับคาบเรียนของใครเป็นเวลาว่าง
+     */
+    public Map<String, List<CommonFreeTimeResponse.FreeWindow>> findCommonFreeTime(List<Long> userIds, int topK) {
+        Map<String, List<CommonFreeTimeResponse.FreeWindow>> windowsByDay = new LinkedHashMap<>();
+        for (TimetableSlot.DayOfWeek day : TimetableSlot.DayOfWeek.values()) {
+            windowsByDay.put(day.getDisplayName(), new ArrayList<>());
+        }
+        if (userIds.isEmpty()) {
+            return windowsByDay;
+        }
         
+        Set<Long> participants = new HashSet<>(userIds);
+        List<UserAvailability> rows = userAvailabilityRepository.findAllById(participants);
+        if (rows.size() < participants.size()) {
+            return windowsByDay; // someone has no timetable yet, so nobody is known to be free
+        }
+        WeeklyAvailability common = null;
+        for (UserAvailability row : rows) {
+            WeeklyAvailability availability = WeeklyAvailability.fromBytes(row.getBitmap());
+            common = (common == null) ? availability : common.and(availability);
+        }
+        
+        for (TimetableSlot.DayOfWeek day : TimetableSlot.DayOfWeek.values()) {
+            List<int[]> shared = common.freeRuns(WeeklyAvailability.dayIndex(day.name()));
+            shared.sort(Comparator.comparingInt(w -> w[0] - w[1])); // longest first
+            List<CommonFreeTimeResponse.FreeWindow> windows = windowsByDay.get(day.getDisplayName());
+            for (int[] window : shared.subList(0, Math.min(topK, shared.size()))) {
+                int startMinute = window[0] * WeeklyAvailability.MINUTES_PER_SLOT;
+                int endMinute = window[1] * WeeklyAvailability.MINUTES_PER_SLOT;
+                windows.add(new CommonFreeTimeResponse.FreeWindow(
+                        LocalTime.ofSecondOfDay(startMinute * 60L).toString(),
+                        // a window running to midnight ends at 24:00, which LocalTime cannot hold
+                        endMinute == 24 * 60 ? "24:00" : LocalTime.ofSecondOfDay(endMinute * 60L).toString(),
+                        endMinute - startMinute));
+            }
+        }
+        return windowsByDay;
+    }
+    
+    public TimetableResponse getUserTimetableResponse(Long userId) {
+        return toTimetableResponse(getUserTimetable(userId));
+    }
+    
+    /**
+     * เวอร์ชันของตารางเรียน (ใช้ทำ ETag) = เวลาที่ bitmap ว่างถูกสร้างใหม่ล่าสุด
+     * ผู้ใช้ที่ยังไม่มีตารางจะได้เวอร์ชันคงที่จนกว่าจะบันทึกตารางครั้งแรก
+     */
+    public ResourceVersion getTimetableVersion(Long userId) {
+        return ResourceVersion.of("t" + userId,
+                userAvailabilityRepository.findUpdatedAtByUserId(userId).orElse(null));
+    }
+    
+    private TimetableResponse toTimetableResponse(List<TimetableSlot> slots) {
         List<TimetableResponse.TimeSlot> timeSlots = slots.stream()
                 .map(slot -> new TimetableResponse.TimeSlot(
                         slot.getDayOfWeek(),
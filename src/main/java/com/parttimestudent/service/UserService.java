@@ -1,32 +1,93 @@
 package com.parttimestudent.service;
 
 import com.parttimestudent.dto.AuthResponse;
+import com.parttimestudent.dto.CursorPage;
 import com.parttimestudent.dto.LoginRequest;
 import com.parttimestudent.dto.RegisterRequest;
+import com.parttimestudent.dto.SearchResults;
+import com.parttimestudent.dto.StudentSummary;
+import com.parttimestudent.dto.UserSearchHit;
+import com.parttimestudent.dto.UserSummary;
+import com.parttimestudent.entity.Project;
 import com.parttimestudent.entity.User;
+import com.parttimestudent.repository.ProjectRepository;
 import com.parttimestudent.repository.UserRepository;
+import com.parttimestudent.security.TokenRevocationRegistry;
+import com.parttimestudent.security.UserDetailsCache;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.scheduler.Scheduler;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
     
+    public static final int MAX_PAGE_SIZE = 200;
+    
     @Autowired
     private UserRepository userRepository;
     
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
     
     @Autowired
     private JwtService jwtService;
     
-    @Transactional
-    public AuthResponse register(RegisterRequest request) {
-        // Check if username already exists
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+    
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+    
+    @Autowired
+    private CustomIdAllocator customIdAllocator;
+    
+    @Autowired
+    private ProjectStatsService projectStatsService;
+    
+    @Autowired
+    private ProjectRepository projectRepository;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private Scheduler blockingScheduler;
+    
+    /**
+     * hash รหัสผ่านบน hashing executor แล้วเปิด transaction บน blockingScheduler
+     * request thread ไม่ต้องรอ BCrypt และระหว่างรอคิว hashing จะไม่ถือ DB connection ไว้
+     *
+     * @throws RejectedExecutionException when the hashing queue is full
+     */
+    public CompletableFuture<AuthResponse> register(RegisterRequest request) {
+        // Cheap check first so a taken username does not cost a BCrypt round
+        if (userRepository.existsByUsername(request.getUsername())) {
+            throw new RuntimeException("Username already exists");
+        }
+        return passwordHashingService.encodeAsync(request.getPassword())
+                .thenApplyAsync(passwordHash -> transactionTemplate.execute(status -> createUser(request, passwordHash)),
+                        blockingScheduler::schedule);
+    }
+    
+    private AuthResponse createUser(RegisterRequest request, String passwordHash) {
+        // Check again inside the transaction; another request may have taken the username meanwhile
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new RuntimeException("Username already exists");
         }
@@ -41,43 +102,80 @@ public class UserService {
         user.setYearLevel(request.getYearLevel());
         user.setSpecialty(request.getSpecialty());
         user.setUsername(request.getUsername());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHash);
         user.setRole(User.UserRole.STUDENT);
         user.setIsActive(true);
         
         user = userRepository.save(user);
         
         // Generate JWT token
-        String token = jwtService.generateToken(user.getUsername());
+        String token = jwtService.generateToken(user);
         
         return new AuthResponse(token, user.getId(), user.getCustomId(), 
                                user.getUsername(), user.getFirstName(), 
                                user.getRole().name());
     }
     
-    public AuthResponse login(LoginRequest request) {
+    /**
+     * ตรวจรหัสผ่านบน hashing executor แล้วคืนผลแบบ async (ไม่ถือ request thread ระหว่างทำ BCrypt)
+     *
+     * @throws RejectedExecutionException when the hashing queue is full
+     */
+    public CompletableFuture<AuthResponse> login(LoginRequest request) {
         User user = userRepository.findByUsername(request.getUsername())
                 .orElseThrow(() -> new RuntimeException("Invalid username or password"));
         
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-            throw new RuntimeException("Invalid username or password");
+        return passwordHashingService.matchesAsync(request.getPassword(), user.getPassword())
+                .thenApply(matches -> {
+                    if (!matches) {
+                        throw new RuntimeException("Invalid username or password");
+                    }
+                    
+                    if (!user.getIsActive()) {
+                        throw new RuntimeException("User account is inactive");
+                    }
+                    
+                    rehashIfNeeded(user, request.getPassword());
+                    
+                    String token = jwtService.generateToken(user);
+                    
+                    return new AuthResponse(token, user.getId(), user.getCustomId(), 
+                                           user.getUsername(), user.getFirstName(), 
+                                           user.getRole().name());
+                });
+    }
+    
+    /**
+     * hash ที่ cost ไม่ตรงกับค่าปัจจุบันจะถูกเขียนใหม่เบื้องหลัง ไม่ทำให้ login ช้าลงหรือล้มเหลว
+     * BCrypt ทำบน hashing pool ส่วนการบันทึกลงฐานข้อมูลย้ายไปทำบน blockingScheduler
+     * (ไม่ให้ thread ของ pool ขนาดเท่าจำนวน core ไปรอ DB)
+     * บันทึกผ่าน entity เพื่อให้ second-level cache อัปเดตเฉพาะ user คนนี้
+     */
+    private void rehashIfNeeded(User user, String rawPassword) {
+        if (!passwordHashingService.needsRehash(user.getPassword())) {
+            return;
         }
-        
-        if (!user.getIsActive()) {
-            throw new RuntimeException("User account is inactive");
+        String oldHash = user.getPassword();
+        try {
+            passwordHashingService.encodeAsync(rawPassword)
+                    .thenAcceptAsync(hash -> transactionTemplate.executeWithoutResult(status ->
+                                    userRepository.findById(user.getId())
+                                            // Skip if the password was changed since this login read it
+                                            .filter(stored -> oldHash.equals(stored.getPassword()))
+                                            .ifPresent(stored -> {
+                                                stored.setPassword(hash);
+                                                userRepository.save(stored);
+                                            })),
+                            blockingScheduler::schedule)
+                    // Best effort: a busy queue or failed write just means another try on the next login
+                    .exceptionally(e -> null);
+        } catch (RejectedExecutionException e) {
+            // Queue is busy; try again on the next login
         }
-        
-        String token = jwtService.generateToken(user.getUsername());
-        
-        return new AuthResponse(token, user.getId(), user.getCustomId(), 
-                               user.getUsername(), user.getFirstName(), 
-                               user.getRole().name());
     }
     
     private String generateCustomId() {
-        Integer maxNumber = userRepository.findMaxCustomIdNumber();
-        int nextNumber = (maxNumber == null) ? 1 : maxNumber + 1;
-        return String.format("TTTP%02d", nextNumber);
+        return customIdAllocator.nextCustomId();
     }
     
     public User getUserById(Long id) {
@@ -85,14 +183,33 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
     
+    public List<User> getUsersByIds(Collection<Long> ids) {
+        return userRepository.findAllById(ids);
+    }
+    
     public User getUserByUsername(String username) {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
     
-    @Transactional
-    public User updateUser(Long id, RegisterRequest request) {
+    /**
+     * รหัสผ่านใหม่ (ถ้ามี) ถูก hash แบบ async ก่อนเปิด transaction เช่นเดียวกับ register
+     *
+     * @throws RejectedExecutionException when the hashing queue is full
+     */
+    public CompletableFuture<User> updateUser(Long id, RegisterRequest request) {
+        if (request.getPassword() == null || request.getPassword().isEmpty()) {
+            return CompletableFuture.completedFuture(
+                    transactionTemplate.execute(status -> applyUserUpdate(id, request, null)));
+        }
+        return passwordHashingService.encodeAsync(request.getPassword())
+                .thenApplyAsync(passwordHash -> transactionTemplate.execute(status -> applyUserUpdate(id, request, passwordHash)),
+                        blockingScheduler::schedule);
+    }
+    
+    private User applyUserUpdate(Long id, RegisterRequest request, String passwordHash) {
         User user = getUserById(id);
+        invalidateAuthentication(user);
         
         // Check if username is being changed and if it already exists
         if (!user.getUsername().equals(request.getUsername()) && 
@@ -105,8 +222,8 @@ public class UserService {
         user.setSpecialty(request.getSpecialty());
         user.setUsername(request.getUsername());
         
-        if (request.getPassword() != null && !request.getPassword().isEmpty()) {
-            user.setPassword(passwordEncoder.encode(request.getPassword()));
+        if (passwordHash != null) {
+            user.setPassword(passwordHash);
         }
         
         return userRepository.save(user);
@@ -115,34 +232,90 @@ public class UserService {
     @Transactional
     public void deleteUser(Long id) {
         User user = getUserById(id);
+        invalidateAuthentication(user);
+        // projects.pm_user_id and created_by are ON DELETE SET NULL, which the second-level cache never sees
+        List<Long> referencingProjectIds = projectRepository.findIdsReferencingUser(id);
         userRepository.delete(user);
+        projectStatsService.pmRemoved(user.getId());
+        evictProjectsAfterCommit(referencingProjectIds);
+    }
+    
+    private void evictProjectsAfterCommit(List<Long> projectIds) {
+        if (projectIds.isEmpty()) {
+            return;
+        }
+        Cache cache = entityManagerFactory.getCache();
+        Runnable evict = () -> projectIds.forEach(projectId -> cache.evict(Project.class, projectId));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
     }
     
     @Transactional
     public User updateUserRole(Long id, User.UserRole role) {
         User user = getUserById(id);
+        invalidateAuthentication(user);
         user.setRole(role);
         return userRepository.save(user);
     }
     
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    /**
+     * เรียกเมื่อ role, username หรือสถานะของ user เปลี่ยน
+     * token ที่ออกไปแล้ว (รวมถึงที่ออกก่อน transaction นี้ commit) จะถูกอ่านสถานะใหม่จากฐานข้อมูลแทนการเชื่อ claims
+     * และลบ UserDetails ที่ cache ไว้ทั้งทันทีและหลัง commit
+     * เพื่อไม่ให้ request ที่วิ่งพร้อมกันเอาข้อมูลเก่ากลับเข้า cache ก่อน transaction จบ
+     */
+    public void invalidateAuthentication(User user) {
+        String username = user.getUsername();
+        tokenRevocationRegistry.markStale(user.getId());
+        userDetailsCache.evict(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userDetailsCache.evict(username);
+                }
+            });
+        }
+    }
+    
+    public List<UserSummary> getUserSummaries() {
+        return userRepository.findAllSummaries();
+    }
+    
+    public UserSummary getUserSummary(Long id) {
+        return userRepository.findSummaryById(id)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+    
+    public List<StudentSummary> getStudentSummariesByRole(User.UserRole role) {
+        return userRepository.findStudentSummariesByRole(role);
     }
     
-    public List<User> getUsersByRole(User.UserRole role) {
-        return userRepository.findByRole(role);
+    public List<StudentSummary> getStudentSummariesBySpecialty(String specialty) {
+        return userRepository.findStudentSummariesBySpecialty(specialty);
     }
     
-    public List<User> getUsersBySpecialty(String specialty) {
-        return userRepository.findBySpecialty(specialty);
+    /**
+     * นักเรียนจากรายการ id (กรอง specialty ถ้าระบุ) เรียงตามชื่อ
+     */
+    public List<StudentSummary> getStudentSummariesByIds(Collection<Long> ids, String specialty) {
+        return userRepository.findStudentSummariesByIdIn(ids, User.UserRole.STUDENT, specialty);
     }
 
     // Sorting methods
-    public List<User> getAllUsersSortedByName(String order) {
+    public List<UserSummary> getUserSummariesSortedByName(String order) {
         if ("desc".equalsIgnoreCase(order)) {
-            return userRepository.findAllByOrderByFirstNameDesc();
+            return userRepository.findAllSummariesOrderByFirstNameDesc();
         }
-        return userRepository.findAllByOrderByFirstNameAsc();
+        return userRepository.findAllSummariesOrderByFirstNameAsc();
     }
 
     public List<User> getUsersByRoleSortedByName(User.UserRole role) {
@@ -152,4 +325,67 @@ public class UserService {
     public List<User> getUsersBySpecialtySortedByName(String specialty) {
         return userRepository.findBySpecialtyOrderByFirstNameAsc(specialty);
     }
-}
\ No newline at end of file
+
+    /**
+     * Keyset pagination ของรายชื่อผู้ใช้ รองรับ sortBy เดียวกับ GET /admin/users
+     * (name หรือไม่ระบุ = เรียงตาม id)
+     */
+    public CursorPage<UserSummary> getUsersPage(String sortBy, String order, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // Fetch one extra row to know whether another page exists
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        
+        String sort;
+        if ("name".equalsIgnoreCase(sortBy)) {
+            sort = "desc".equalsIgnoreCase(order) ? "name:desc" : "name:asc";
+        } else {
+            sort = "id";
+        }
+        PageCursor after = PageCursor.decode(cursor, sort);
+        
+        List<User> users = switch (sort) {
+            case "name:asc" -> (after == null)
+                    ? userRepository.findAllByOrderByFirstNameAscIdAsc(pageable)
+                    : userRepository.findPageByNameAfter(after.getString(0), after.getLong(1), pageable);
+            case "name:desc" -> (after == null)
+                    ? userRepository.findAllByOrderByFirstNameDescIdDesc(pageable)
+                    : userRepository.findPageByNameBefore(after.getString(0), after.getLong(1), pageable);
+            default -> (after == null)
+                    ? userRepository.findAllByOrderByIdAsc(pageable)
+                    : userRepository.findByIdGreaterThanOrderByIdAsc(after.getLong(0), pageable);
+        };
+        
+        List<UserSummary> items = users.stream()
+                .limit(limit)
+                .map(UserSummary::from)
+                .collect(Collectors.toList());
+        if (users.size() <= limit) {
+            return new CursorPage<>(items, null);
+        }
+        
+        UserSummary last = items.get(limit - 1);
+        String id = String.valueOf(last.getId());
+        String nextCursor = "id".equals(sort)
+                ? PageCursor.encode(sort, id)
+                : PageCursor.encode(sort, last.getFirstName(), id);
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    /**
+     * ค้นหาผู้ใช้จากชื่อ, username, custom id หรือ specialty
+     * แบบ prefix และแบบพิมพ์ผิดได้ (pg_trgm) เรียงตามความใกล้เคียง
+     *
+     * @throws IllegalArgumentException when the query or page is invalid
+     */
+    @Transactional(readOnly = true)
+    public SearchResults<UserSearchHit> searchUsers(String q, int page, int size) {
+        String term = SearchTerms.normalize(q);
+        String prefix = SearchTerms.prefixPattern(term);
+        int limit = SearchTerms.pageSize(size);
+        int pageNumber = SearchTerms.page(page);
+        
+        List<UserSearchHit> items = userRepository.searchUsers(term, prefix, limit, (long) pageNumber * limit);
+        long total = userRepository.countSearchUsers(term, prefix);
+        return new SearchResults<>(items, pageNumber, limit, total);
+    }
+}
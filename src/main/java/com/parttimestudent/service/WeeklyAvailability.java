@@ -0,0 +1,177 @@
+package com.parttimestudent.service;
+
+import com.parttimestudent.entity.TimetableSlot;
+
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ตารางว่างรายสัปดาห์ของ user หนึ่งคนในรูป bitmap
+ * 7 วัน x 96 ช่อง (ช่องละ 15 นาที) = 672 bit เก็บใน long[11]
+ * bit ที่เป็น 1 หมายถึงว่าง การถามว่าว่างหรือไม่จึงเป็นแค่ bitwise AND
+ * Instances are immutable once built.
+ */
+public final class WeeklyAvailability {
+
+    public static final int DAYS = 7;
+    public static final int MINUTES_PER_SLOT = 15;
+    public static final int SLOTS_PER_DAY = 24 * 60 / MINUTES_PER_SLOT;
+    public static final int TOTAL_SLOTS = DAYS * SLOTS_PER_DAY;
+
+    private static final int WORDS = (TOTAL_SLOTS + 63) / 64;
+
+    public static final WeeklyAvailability EMPTY = new WeeklyAvailability(new long[WORDS]);
+
+    private final long[] words;
+
+    private WeeklyAvailability(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Build from stored slots: free slots set bits (rounded inwards to whole
+     * 15-minute slots), then busy slots clear bits (rounded outwards), so a
+     * class always wins over an overlapping free period.
+     */
+    public static WeeklyAvailability fromSlots(Collection<TimetableSlot> slots) {
+        long[] words = new long[WORDS];
+        for (TimetableSlot slot : slots) {
+            if (Boolean.TRUE.equals(slot.getIsFree())) {
+                applyRange(words, slot.getDayOfWeek(),
+                        slotCeil(slot.getStartTime()), slotFloor(slot.getEndTime()), true);
+            }
+        }
+        for (TimetableSlot slot : slots) {
+            if (!Boolean.TRUE.equals(slot.getIsFree())) {
+                applyRange(words, slot.getDayOfWeek(),
+                        slotFloor(slot.getStartTime()), slotCeil(slot.getEndTime()), false);
+            }
+        }
+        return new WeeklyAvailability(words);
+    }
+
+    public static WeeklyAvailability fromBytes(byte[] bytes) {
+        long[] words = new long[WORDS];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int i = 0; i < WORDS && buffer.remaining() >= Long.BYTES; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new WeeklyAvailability(words);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(WORDS * Long.BYTES);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    public boolean isFree(int slotIndex) {
+        return (words[slotIndex >>> 6] & (1L << (slotIndex & 63))) != 0;
+    }
+
+    /**
+     * @return maximal runs of free slots on the given day as [fromSlot, toSlot), in time order
+     */
+    public List<int[]> freeRuns(int day) {
+        List<int[]> runs = new ArrayList<>();
+        if (day < 0 || day >= DAYS) {
+            return runs;
+        }
+        int base = day * SLOTS_PER_DAY;
+        int slot = 0;
+        while (slot < SLOTS_PER_DAY) {
+            if (!isFree(base + slot)) {
+                slot++;
+                continue;
+            }
+            int from = slot;
+            while (slot < SLOTS_PER_DAY && isFree(base + slot)) {
+                slot++;
+            }
+            runs.add(new int[]{from, slot});
+        }
+        return runs;
+    }
+
+    public WeeklyAvailability and(WeeklyAvailability other) {
+        long[] result = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            result[i] = words[i] & other.words[i];
+        }
+        return new WeeklyAvailability(result);
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 0 (Monday) .. 6 (Sunday), or -1 if the name is not a day of week
+     */
+    public static int dayIndex(String dayOfWeek) {
+        if (dayOfWeek == null) {
+            return -1;
+        }
+        try {
+            return DayOfWeek.valueOf(dayOfWeek.trim().toUpperCase(Locale.ROOT)).getValue() - 1;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    public static int slotFloor(LocalTime time) {
+        return time.toSecondOfDay() / 60 / MINUTES_PER_SLOT;
+    }
+
+    public static int slotCeil(LocalTime time) {
+        int minutes = (time.toSecondOfDay() + 59) / 60;
+        return (minutes + MINUTES_PER_SLOT - 1) / MINUTES_PER_SLOT;
+    }
+
+    private static void applyRange(long[] words, String dayOfWeek, int fromSlot, int toSlot, boolean free) {
+        int day = dayIndex(dayOfWeek);
+        if (day < 0 || fromSlot >= toSlot) {
+            return;
+        }
+        int from = day * SLOTS_PER_DAY + fromSlot;
+        int to = day * SLOTS_PER_DAY + Math.min(toSlot, SLOTS_PER_DAY);
+        for (int i = from; i < to; ) {
+            int bit = i & 63;
+            int length = Math.min(64 - bit, to - i);
+            long mask = mask(bit, length);
+            if (free) {
+                words[i >>> 6] |= mask;
+            } else {
+                words[i >>> 6] &= ~mask;
+            }
+            i += length;
+        }
+    }
+
+    private static long mask(int bit, int length) {
+        return (length == 64) ? -1L : ((1L << length) - 1) << bit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof WeeklyAvailability other && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
@@ -0,0 +1,85 @@
+package com.parttimestudent.benchmark;
+
+import com.parttimestudent.service.ImagePreprocessor;
+import com.parttimestudent.service.SampleImages;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a timetable photo into the base64 payload sent to Gemini.
+ * originalPayload is the old path (whole upload base64-encoded as-is); preparedPayload
+ * downscales to a grayscale JPEG first. Payload sizes are printed once per trial;
+ * add -prof gc to the JMH arguments to compare allocation per upload.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=ImagePreprocessorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ImagePreprocessorBenchmark {
+
+    // 12 MP and 48 MP phone cameras
+    @Param({"4000x3000", "8000x6000"})
+    public String resolution;
+
+    private Path photo;
+    private ImagePreprocessor imagePreprocessor;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = resolution.split("x");
+        photo = Files.createTempFile("benchmark-photo-", ".jpg");
+        SampleImages.writeTimetablePhoto(photo, Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+
+        imagePreprocessor = new ImagePreprocessor();
+        ReflectionTestUtils.setField(imagePreprocessor, "maxDimension", 1600);
+        ReflectionTestUtils.setField(imagePreprocessor, "jpegQuality", 0.8f);
+
+        System.out.printf("%n%s payload: original %d bytes, prepared %d bytes%n",
+                resolution, originalPayload(), preparedPayload());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(photo);
+    }
+
+    @Benchmark
+    public int originalPayload() throws IOException {
+        return Base64.getEncoder().encodeToString(Files.readAllBytes(photo)).length();
+    }
+
+    @Benchmark
+    public int preparedPayload() throws IOException {
+        ImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(photo, "image/jpeg");
+        try {
+            return Base64.getEncoder().encodeToString(Files.readAllBytes(prepared.getPath())).length();
+        } finally {
+            if (prepared.isTemporary()) {
+                Files.deleteIfExists(prepared.getPath());
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.parttimestudent.benchmark;
+
+import com.parttimestudent.entity.User;
+import com.parttimestudent.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token validations per second in JwtAuthenticationFilter.
+ * parseThreeTimes is the old path: the username, the expiry and the validation each
+ * derived the HMAC key, built a new parser and re-verified the token.
+ * parseOnce is the current path with the key and parser built once at startup.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=JwtServiceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-at-least-256-bits-long-0123456789";
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "expiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("student42");
+        user.setRole(User.UserRole.STUDENT);
+        token = jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public void parseThreeTimes(Blackhole blackhole) {
+        String username = legacyParse(token).getSubject();
+        String subject = legacyParse(token).getSubject();
+        Date expiration = legacyParse(token).getExpiration();
+        blackhole.consume(username.equals(subject) && expiration.after(new Date()));
+    }
+
+    @Benchmark
+    public void parseOnce(Blackhole blackhole) {
+        Claims claims = jwtService.parseToken(token);
+        blackhole.consume(claims.getSubject().equals(claims.getSubject())
+                && claims.getExpiration().after(new Date()));
+        blackhole.consume(jwtService.extractUserId(claims));
+        blackhole.consume(jwtService.extractRole(claims));
+    }
+
+    // What every extractUsername / extractExpiration call used to do
+    private static Claims legacyParse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
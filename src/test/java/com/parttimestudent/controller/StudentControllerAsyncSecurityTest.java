@@ -0,0 +1,105 @@
+package com.parttimestudent.controller;
+
+import com.parttimestudent.config.SecurityConfig;
+import com.parttimestudent.dto.TimetableResponse;
+import com.parttimestudent.entity.User;
+import com.parttimestudent.security.CustomUserDetailsService;
+import com.parttimestudent.security.JwtAuthenticationFilter;
+import com.parttimestudent.security.TokenRevocationRegistry;
+import com.parttimestudent.security.UserDetailsCache;
+import com.parttimestudent.service.JwtService;
+import com.parttimestudent.service.ProjectService;
+import com.parttimestudent.service.TimetableJobService;
+import com.parttimestudent.service.TimetableService;
+import com.parttimestudent.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The Mono returned by /student/timetable/upload completes on another thread and is written
+ * back through an ASYNC dispatch; that dispatch must not be re-authorized as anonymous.
+ */
+@WebMvcTest(StudentController.class)
+@Import({SecurityConfig.class, JwtAuthenticationFilter.class, JwtService.class, UserDetailsCache.class})
+@TestPropertySource(properties = {
+        "jwt.secret=test-secret-key-that-is-at-least-256-bits-long-0123456789",
+        "jwt.expiration=3600000"
+})
+class StudentControllerAsyncSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private TimetableService timetableService;
+
+    @MockBean
+    private ProjectService projectService;
+
+    @MockBean
+    private TimetableJobService timetableJobService;
+
+    @MockBean
+    private CustomUserDetailsService customUserDetailsService;
+
+    @MockBean
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    @Test
+    void uploadWithBearerTokenCompletesAsyncDispatch() throws Exception {
+        User student = new User();
+        student.setId(7L);
+        student.setUsername("student7");
+        student.setRole(User.UserRole.STUDENT);
+        String token = jwtService.generateToken(student);
+
+        TimetableResponse extracted = new TimetableResponse(List.of(
+                new TimetableResponse.TimeSlot("MONDAY", "09:00", "12:00", "Math", false)));
+        when(timetableService.uploadTimetable(eq(7L), any()))
+                .thenReturn(Mono.fromCallable(() -> extracted).subscribeOn(Schedulers.boundedElastic()));
+
+        MockMultipartFile file = new MockMultipartFile("file", "timetable.png", "image/png", new byte[] {1, 2, 3});
+        MvcResult result = mockMvc.perform(multipart("/student/timetable/upload")
+                        .file(file)
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.slots[0].subject").value("Math"));
+    }
+
+    @Test
+    void uploadWithoutTokenIsRejected() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "timetable.png", "image/png", new byte[] {1, 2, 3});
+        mockMvc.perform(multipart("/student/timetable/upload").file(file))
+                .andExpect(status().isForbidden());
+    }
+}
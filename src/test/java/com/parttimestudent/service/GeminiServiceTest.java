@@ -0,0 +1,249 @@
+package com.parttimestudent.service;
+
+import com.parttimestudent.dto.TimetableResponse;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * GeminiService against a local stub HTTP server: retries, timeouts, the circuit breaker
+ * and the rule that an unusable answer is an error rather than an empty timetable.
+ */
+class GeminiServiceTest {
+
+    private static final String VALID_TIMETABLE = """
+            {"slots":[{"dayOfWeek":"Monday","startTime":"09:00","endTime":"12:00","subject":"Math","isFree":false}]}""";
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final Queue<StubResponse> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private ExtractionCacheService extractionCacheService;
+    private Scheduler scheduler;
+    private GeminiService geminiService;
+    private Path image;
+
+    private record StubResponse(int status, String body, long delayMillis) {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gemini", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            StubResponse response = responses.poll();
+            if (response == null) {
+                response = new StubResponse(500, "{}", 0);
+            }
+            try {
+                Thread.sleep(response.delayMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            try {
+                exchange.sendResponseHeaders(response.status(), body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (IOException e) {
+                // Client gave up (timeout test)
+            }
+        });
+        server.start();
+
+        extractionCacheService = mock(ExtractionCacheService.class);
+        when(extractionCacheService.keyOf(any(Path.class), anyString())).thenReturn("key");
+        when(extractionCacheService.lookup("key")).thenReturn(Optional.empty());
+
+        // Not a decodable image, so the preprocessor sends it unchanged
+        image = Files.write(tempDir.resolve("timetable.bin"), new byte[] {1, 2, 3, 4});
+        scheduler = Schedulers.newBoundedElastic(4, 100, "gemini-test");
+
+        geminiService = new GeminiService();
+        ReflectionTestUtils.setField(geminiService, "apiKey", "test-key");
+        ReflectionTestUtils.setField(geminiService, "apiUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/gemini");
+        ReflectionTestUtils.setField(geminiService, "extractionCacheService", extractionCacheService);
+        ReflectionTestUtils.setField(geminiService, "imagePreprocessor", new ImagePreprocessor());
+        ReflectionTestUtils.setField(geminiService, "blockingScheduler", scheduler);
+        ReflectionTestUtils.setField(geminiService, "maxConcurrent", 4);
+        ReflectionTestUtils.setField(geminiService, "acquireTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(geminiService, "maxPending", 100);
+        ReflectionTestUtils.setField(geminiService, "pendingTimeoutSeconds", 5L);
+        ReflectionTestUtils.setField(geminiService, "connectTimeoutMs", 1000);
+        ReflectionTestUtils.setField(geminiService, "attemptTimeoutSeconds", 1L);
+        ReflectionTestUtils.setField(geminiService, "overallTimeoutSeconds", 10L);
+        ReflectionTestUtils.setField(geminiService, "maxRetries", 2);
+        ReflectionTestUtils.setField(geminiService, "retryBackoffMs", 10L);
+        ReflectionTestUtils.setField(geminiService, "circuitFailureThreshold", 2);
+        ReflectionTestUtils.setField(geminiService, "circuitOpenSeconds", 60L);
+        geminiService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        geminiService.shutdown();
+        scheduler.dispose();
+        server.stop(0);
+    }
+
+    private static String geminiAnswer(String text) {
+        String escaped = text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + escaped + "\"}]}}]}";
+    }
+
+    @Test
+    void parsesTimetableAndCachesIt() throws IOException {
+        responses.add(new StubResponse(200, geminiAnswer("```json\n" + VALID_TIMETABLE + "\n```"), 0));
+
+        TimetableResponse timetable = geminiService.extractTimetableFromImage(image, "image/png");
+
+        assertThat(timetable.getSlots()).hasSize(1);
+        assertThat(timetable.getSlots().get(0).getSubject()).isEqualTo("Math");
+        verify(extractionCacheService).store("key", 4L, timetable);
+    }
+
+    @Test
+    void retriesServerErrorsThenSucceeds() throws IOException {
+        responses.add(new StubResponse(503, "{}", 0));
+        responses.add(new StubResponse(429, "{}", 0));
+        responses.add(new StubResponse(200, geminiAnswer(VALID_TIMETABLE), 0));
+
+        TimetableResponse timetable = geminiService.extractTimetableFromImageAsync(image, "image/png").block();
+
+        assertThat(timetable.getSlots()).hasSize(1);
+        assertThat(requests.get()).isEqualTo(3);
+    }
+
+    @Test
+    void unparseableAnswerIsAnErrorAndNotCached() {
+        responses.add(new StubResponse(200, geminiAnswer("Sorry, I cannot read this image."), 0));
+
+        assertThatThrownBy(() -> geminiService.extractTimetableFromImage(image, "image/png"))
+                .isInstanceOf(TimetableExtractionException.class);
+        verify(extractionCacheService, never()).store(anyString(), anyLong(), any());
+    }
+
+    @Test
+    void answerWithoutSlotsIsAnError() {
+        responses.add(new StubResponse(200, geminiAnswer("{\"slots\":null}"), 0));
+
+        assertThatThrownBy(() -> geminiService.extractTimetableFromImageAsync(image, "image/png").block())
+                .isInstanceOf(TimetableExtractionException.class);
+        verify(extractionCacheService, never()).store(anyString(), anyLong(), any());
+    }
+
+    @Test
+    void clientErrorIsNotRetried() {
+        responses.add(new StubResponse(400, "{\"error\":\"bad request\"}", 0));
+
+        assertThatThrownBy(() -> geminiService.extractTimetableFromImage(image, "image/png"))
+                .isNotInstanceOf(GeminiUnavailableException.class)
+                .hasMessageContaining("Gemini rejected");
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void slowAnswerTimesOut() {
+        ReflectionTestUtils.setField(geminiService, "maxRetries", 0);
+        responses.add(new StubResponse(200, geminiAnswer(VALID_TIMETABLE), 3000));
+
+        assertThatThrownBy(() -> geminiService.extractTimetableFromImage(image, "image/png"))
+                .isInstanceOf(GeminiUnavailableException.class);
+    }
+
+    @Test
+    void openCircuitFailsFastWithoutCallingGemini() {
+        // Two exhausted calls (3 attempts each) reach the failure threshold of 2
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> geminiService.extractTimetableFromImage(image, "image/png"))
+                    .isInstanceOf(GeminiUnavailableException.class);
+        }
+        int before = requests.get();
+
+        assertThatThrownBy(() -> geminiService.extractTimetableFromImage(image, "image/png"))
+                .isInstanceOf(GeminiUnavailableException.class)
+                .hasMessageContaining("degraded");
+        assertThat(requests.get()).isEqualTo(before);
+    }
+
+    @Test
+    void asyncCallsBeyondThePoolQueueInsteadOfFailing() {
+        restartWithPool(1, 100);
+        for (int i = 0; i < 6; i++) {
+            responses.add(new StubResponse(200, geminiAnswer(VALID_TIMETABLE), 100));
+        }
+
+        List<TimetableResponse> timetables = Flux.range(0, 6)
+                .flatMap(i -> geminiService.extractTimetableFromImageAsync(image, "image/png"))
+                .collectList()
+                .block();
+
+        assertThat(timetables).hasSize(6);
+        assertThat(requests.get()).isEqualTo(6);
+    }
+
+    @Test
+    void overflowingPendingQueueIsRejectedWithoutTrippingTheCircuit() {
+        restartWithPool(1, 1);
+        for (int i = 0; i < 3; i++) {
+            responses.add(new StubResponse(200, geminiAnswer(VALID_TIMETABLE), 500));
+        }
+
+        List<Object> outcomes = Flux.range(0, 3)
+                .flatMap(i -> geminiService.extractTimetableFromImageAsync(image, "image/png")
+                        .<Object>map(timetable -> timetable)
+                        .onErrorResume(e -> Mono.just(e)))
+                .collectList()
+                .block();
+
+        assertThat(outcomes).filteredOn(GeminiUnavailableException.class::isInstance)
+                .singleElement()
+                .satisfies(e -> assertThat((Throwable) e).hasMessageContaining("Too many"));
+        assertThat(outcomes).filteredOn(TimetableResponse.class::isInstance).hasSize(2);
+        CircuitBreaker circuitBreaker = (CircuitBreaker) ReflectionTestUtils.getField(geminiService, "circuitBreaker");
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private void restartWithPool(int maxConcurrent, int maxPending) {
+        geminiService.shutdown();
+        ReflectionTestUtils.setField(geminiService, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(geminiService, "maxPending", maxPending);
+        geminiService.init();
+    }
+}
@@ -0,0 +1,80 @@
+package com.parttimestudent.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImagePreprocessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ImagePreprocessor imagePreprocessor;
+
+    @BeforeEach
+    void setUp() {
+        imagePreprocessor = new ImagePreprocessor();
+        ReflectionTestUtils.setField(imagePreprocessor, "maxDimension", 1600);
+        ReflectionTestUtils.setField(imagePreprocessor, "jpegQuality", 0.8f);
+    }
+
+    @Test
+    void phonePhotoIsDownscaledToGrayscaleJpeg() throws IOException {
+        Path photo = tempDir.resolve("timetable.jpg");
+        SampleImages.writeTimetablePhoto(photo, 4000, 3000);
+
+        ImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(photo, "image/jpeg");
+        try {
+            assertThat(prepared.isTemporary()).isTrue();
+            assertThat(prepared.getMimeType()).isEqualTo("image/jpeg");
+
+            BufferedImage output = ImageIO.read(prepared.getPath().toFile());
+            assertThat(output.getWidth()).isEqualTo(1600);
+            assertThat(output.getHeight()).isEqualTo(1200);
+            assertThat(output.getColorModel().getNumComponents()).isEqualTo(1);
+            // Well under a quarter of the original upload
+            assertThat(Files.size(prepared.getPath())).isLessThan(Files.size(photo) / 4);
+        } finally {
+            Files.deleteIfExists(prepared.getPath());
+        }
+    }
+
+    @Test
+    void imageWithinLimitIsNotUpscaled() throws IOException {
+        Path photo = tempDir.resolve("small.jpg");
+        SampleImages.writeTimetablePhoto(photo, 1200, 900);
+
+        ImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(photo, "image/jpeg");
+        try {
+            BufferedImage output = ImageIO.read(prepared.getPath().toFile());
+            assertThat(output.getWidth()).isEqualTo(1200);
+            assertThat(output.getHeight()).isEqualTo(900);
+        } finally {
+            if (prepared.isTemporary()) {
+                Files.deleteIfExists(prepared.getPath());
+            }
+        }
+    }
+
+    @Test
+    void unreadableFileIsSentAsIs() throws IOException {
+        Path pdf = tempDir.resolve("timetable.pdf");
+        Files.writeString(pdf, "%PDF-1.4 not an image", StandardCharsets.US_ASCII);
+
+        ImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(pdf, "application/pdf");
+
+        assertThat(prepared.getPath()).isEqualTo(pdf);
+        assertThat(prepared.getMimeType()).isEqualTo("application/pdf");
+        assertThat(prepared.isTemporary()).isFalse();
+    }
+}
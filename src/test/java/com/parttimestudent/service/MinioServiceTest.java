@@ -0,0 +1,279 @@
+package com.parttimestudent.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MinioService against a local stub of the S3 calls it makes: PUT with Content-MD5 and
+ * multipart upload (initiate, upload part, complete, abort).
+ */
+class MinioServiceTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    private static final String BUCKET = "uploads";
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private MinioService minioService;
+
+    // "bucket/object" -> content
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    // uploadId -> part number -> content
+    private final Map<String, Map<Integer, byte[]>> multipartUploads = new ConcurrentHashMap<>();
+    // part number -> behaviour for its PUT
+    private final Map<Integer, String> partFaults = new ConcurrentHashMap<>();
+    private final AtomicInteger partsInFlight = new AtomicInteger();
+    private final AtomicBoolean abortedWithPartsInFlight = new AtomicBoolean();
+    private final CountDownLatch slowPartStored = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+
+        minioService = new MinioService("127.0.0.1", server.getAddress().getPort(), false,
+                "access", "secret-key", BUCKET, "us-east-1", PART_SIZE, PART_SIZE, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        minioService.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void smallFileIsOnePutWithChecksum() throws Exception {
+        byte[] content = randomBytes(64 * 1024);
+
+        minioService.upload(new MockMultipartFile("file", "a.pdf", "application/pdf", content), "docs/a.pdf");
+
+        assertThat(objects).containsOnlyKeys(BUCKET + "/docs/a.pdf");
+        assertThat(objects.get(BUCKET + "/docs/a.pdf")).isEqualTo(content);
+        assertThat(multipartUploads).isEmpty();
+    }
+
+    @Test
+    void largeFileIsOneMultipartUploadWithoutTemporaryObjects() throws Exception {
+        byte[] content = randomBytes(2 * PART_SIZE + 1024);
+
+        minioService.upload(new MockMultipartFile("file", "scan.pdf", "application/pdf", content), "docs/scan.pdf");
+
+        assertThat(objects).containsOnlyKeys(BUCKET + "/docs/scan.pdf");
+        assertThat(objects.get(BUCKET + "/docs/scan.pdf")).isEqualTo(content);
+        assertThat(multipartUploads).isEmpty();
+    }
+
+    @Test
+    void failedUploadWaitsForInFlightPartsThenAborts() throws Exception {
+        byte[] content = randomBytes(2 * PART_SIZE + 1024);
+        partFaults.put(1, "fail");
+        partFaults.put(3, "slow");
+
+        assertThatThrownBy(() -> minioService.upload(
+                new MockMultipartFile("file", "scan.pdf", "application/pdf", content), "docs/scan.pdf"))
+                .isInstanceOf(Exception.class);
+
+        // The slow part lands after the failure was seen; the abort must come after it
+        assertThat(slowPartStored.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(abortedWithPartsInFlight).isFalse();
+        assertThat(multipartUploads).isEmpty();
+        assertThat(objects.keySet()).isEmpty();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8).substring(1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            switch (exchange.getRequestMethod()) {
+                case "PUT" -> {
+                    if (query.containsKey("uploadId")) {
+                        uploadPart(exchange, query, body);
+                    } else {
+                        putObject(exchange, path, body);
+                    }
+                }
+                case "POST" -> {
+                    if (query.containsKey("uploads")) {
+                        String uploadId = UUID.randomUUID().toString();
+                        multipartUploads.put(uploadId, new TreeMap<>());
+                        sendXml(exchange, 200, "<InitiateMultipartUploadResult>"
+                                + "<Bucket>" + BUCKET + "</Bucket><Key>" + path.substring(BUCKET.length() + 1) + "</Key>"
+                                + "<UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                    } else {
+                        completeMultipartUpload(exchange, path, query.get("uploadId"));
+                    }
+                }
+                case "DELETE" -> {
+                    if (query.containsKey("uploadId")) {
+                        if (partsInFlight.get() > 0) {
+                            abortedWithPartsInFlight.set(true);
+                        }
+                        multipartUploads.remove(query.get("uploadId"));
+                    } else {
+                        objects.remove(path);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> sendError(exchange, 405, "MethodNotAllowed");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void putObject(HttpExchange exchange, String path, byte[] body) throws IOException {
+        if (!hasValidChecksum(exchange, body)) {
+            sendError(exchange, 400, "BadDigest");
+            return;
+        }
+        objects.put(path, body);
+        exchange.getResponseHeaders().add("ETag", "\"" + md5Hex(body) + "\"");
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void uploadPart(HttpExchange exchange, Map<String, String> query, byte[] body) throws IOException {
+        int partNumber = Integer.parseInt(query.get("partNumber"));
+        String fault = partFaults.getOrDefault(partNumber, "");
+        if (fault.equals("fail")) {
+            sendError(exchange, 500, "InternalError");
+            return;
+        }
+        partsInFlight.incrementAndGet();
+        try {
+            if (fault.equals("slow")) {
+                Thread.sleep(1000);
+            }
+            if (!hasValidChecksum(exchange, body)) {
+                sendError(exchange, 400, "BadDigest");
+                return;
+            }
+            Map<Integer, byte[]> parts = multipartUploads.get(query.get("uploadId"));
+            if (parts == null) {
+                sendError(exchange, 404, "NoSuchUpload");
+                return;
+            }
+            parts.put(partNumber, body);
+            if (fault.equals("slow")) {
+                slowPartStored.countDown();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            partsInFlight.decrementAndGet();
+        }
+        exchange.getResponseHeaders().add("ETag", "\"" + md5Hex(body) + "\"");
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private static boolean hasValidChecksum(HttpExchange exchange, byte[] body) {
+        String contentMd5 = exchange.getRequestHeaders().getFirst("Content-MD5");
+        return contentMd5 != null && contentMd5.equals(md5Base64(body));
+    }
+
+    private void completeMultipartUpload(HttpExchange exchange, String path, String uploadId) throws IOException {
+        Map<Integer, byte[]> parts = multipartUploads.remove(uploadId);
+        if (parts == null) {
+            sendError(exchange, 404, "NoSuchUpload");
+            return;
+        }
+        int total = parts.values().stream().mapToInt(part -> part.length).sum();
+        byte[] content = new byte[total];
+        int offset = 0;
+        for (byte[] part : parts.values()) {
+            System.arraycopy(part, 0, content, offset, part.length);
+            offset += part.length;
+        }
+        objects.put(path, content);
+        String key = path.substring(BUCKET.length() + 1);
+        sendXml(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+                + "<Location>http://stub/" + path + "</Location><Bucket>" + BUCKET + "</Bucket>"
+                + "<Key>" + key + "</Key><ETag>\"" + md5Hex(content) + "-" + parts.size() + "\"</ETag>"
+                + "</CompleteMultipartUploadResult>");
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code) throws IOException {
+        sendXml(exchange, status, "<Error><Code>" + code + "</Code><Message>" + code + "</Message>"
+                + "<RequestId>stub</RequestId><HostId>stub</HostId></Error>");
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] md5(byte[] content) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(content);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String md5Base64(byte[] content) {
+        return Base64.getEncoder().encodeToString(md5(content));
+    }
+
+    private static String md5Hex(byte[] content) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : md5(content)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
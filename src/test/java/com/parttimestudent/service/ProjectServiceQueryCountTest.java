@@ -0,0 +1,136 @@
+package com.parttimestudent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.parttimestudent.dto.ProjectResponse;
+import com.parttimestudent.entity.Project;
+import com.parttimestudent.entity.ProjectMember;
+import com.parttimestudent.entity.User;
+import com.parttimestudent.repository.ProjectRepository;
+import com.parttimestudent.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * convertToResponses must cost the same number of statements for 1 project as for 50
+ * (members and PMs are bulk-loaded, not fetched per project).
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(ProjectService.class)
+class ProjectServiceQueryCountTest {
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private ProjectStatsService projectStatsService;
+
+    @MockBean
+    private ObjectMapper objectMapper;
+
+    private int userSequence;
+
+    @BeforeEach
+    void setUp() {
+        when(userService.getUsersByIds(any()))
+                .thenAnswer(invocation -> userRepository.findAllById(invocation.<Collection<Long>>getArgument(0)));
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithProjectCount() {
+        List<Long> oneProject = createProjects(1);
+        List<Long> fiftyProjects = createProjects(50);
+
+        long forOne = statementsToConvert(oneProject);
+        long forFifty = statementsToConvert(fiftyProjects);
+
+        assertThat(forFifty).isEqualTo(forOne);
+        // Members (with users) + PMs
+        assertThat(forOne).isEqualTo(2);
+    }
+
+    private long statementsToConvert(List<Long> projectIds) {
+        entityManager.clear();
+        List<Project> projects = projectRepository.findAllById(projectIds);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<ProjectResponse> responses = projectService.convertToResponses(projects);
+        long statements = statistics.getPrepareStatementCount();
+
+        assertThat(responses).hasSize(projectIds.size());
+        assertThat(responses).allSatisfy(response -> {
+            assertThat(response.getPmUser()).isNotNull();
+            assertThat(response.getMembers()).hasSize(3);
+        });
+        return statements;
+    }
+
+    private List<Long> createProjects(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Project project = new Project();
+            project.setProjectName("Project " + userSequence);
+            project.setDifficultyLevel(3);
+            project.setDurationDays(30);
+            project.setStartDate(LocalDate.now());
+            project.setDeadline(LocalDate.now().plusDays(30));
+            project.setPmUser(createUser(User.UserRole.PM));
+            entityManager.persist(project);
+
+            for (int m = 0; m < 3; m++) {
+                ProjectMember member = new ProjectMember();
+                member.setProject(project);
+                member.setUser(createUser(User.UserRole.STUDENT));
+                entityManager.persist(member);
+            }
+            ids.add(project.getId());
+        }
+        entityManager.flush();
+        return ids;
+    }
+
+    private User createUser(User.UserRole role) {
+        int n = ++userSequence;
+        User user = new User();
+        user.setCustomId(String.format("TTTP%04d", n));
+        user.setFirstName("User " + n);
+        user.setYearLevel("3");
+        user.setSpecialty("Backend");
+        user.setUsername("user" + n);
+        user.setPassword("hash");
+        user.setRole(role);
+        return entityManager.persist(user);
+    }
+}
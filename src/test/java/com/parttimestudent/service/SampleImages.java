@@ -0,0 +1,72 @@
+package com.parttimestudent.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Synthetic stand-ins for timetable photos taken on a phone: a printed grid with text
+ * on slightly tinted paper plus sensor noise, saved as a high-quality colour JPEG.
+ */
+public final class SampleImages {
+
+    private SampleImages() {
+    }
+
+    public static void writeTimetablePhoto(Path target, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int shade = 225 + random.nextInt(20) - (x + y) * 20 / (width + height);
+                image.setRGB(x, y, new Color(shade, shade - 4, shade - 12).getRGB());
+            }
+        }
+
+        Graphics2D g = image.createGraphics();
+        try {
+            int columns = 8;
+            int rows = 12;
+            int cellWidth = width / columns;
+            int cellHeight = height / rows;
+            g.setColor(new Color(30, 30, 40));
+            g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, Math.max(10, cellHeight / 4)));
+            for (int column = 0; column <= columns; column++) {
+                g.fillRect(column * cellWidth, 0, Math.max(1, width / 800), height);
+            }
+            for (int row = 0; row <= rows; row++) {
+                g.fillRect(0, row * cellHeight, width, Math.max(1, height / 800));
+            }
+            for (int row = 1; row < rows; row++) {
+                for (int column = 1; column < columns; column++) {
+                    if ((row + column) % 3 != 0) {
+                        g.drawString("CS" + (100 + row * 10 + column), column * cellWidth + cellWidth / 8,
+                                row * cellHeight + cellHeight / 2);
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.95f);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.parttimestudent.service;
+
+import com.parttimestudent.dto.CommonFreeTimeResponse;
+import com.parttimestudent.entity.TimetableSlot;
+import com.parttimestudent.entity.UserAvailability;
+import com.parttimestudent.repository.UserAvailabilityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * findCommonFreeTime works off the persisted availability bitmaps, so a class that overlaps
+ * a free period is never reported as common free time and every pod gives the same answer.
+ */
+class TimetableServiceCommonFreeTimeTest {
+
+    // user_availability table: user id -> persisted bitmap
+    private final Map<Long, UserAvailability> stored = new HashMap<>();
+    private UserAvailabilityRepository userAvailabilityRepository;
+    private TimetableService timetableService;
+
+    @BeforeEach
+    void setUp() {
+        userAvailabilityRepository = mock(UserAvailabilityRepository.class);
+        when(userAvailabilityRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<UserAvailability> rows = new ArrayList<>();
+            for (Long userId : invocation.<Iterable<Long>>getArgument(0)) {
+                if (stored.containsKey(userId)) {
+                    rows.add(stored.get(userId));
+                }
+            }
+            return rows;
+        });
+
+        timetableService = new TimetableService();
+        ReflectionTestUtils.setField(timetableService, "userAvailabilityRepository", userAvailabilityRepository);
+    }
+
+    @Test
+    void classOverlappingAFreePeriodIsNotCommonFreeTime() {
+        store(1L, List.of(
+                slot("Monday", "09:00", "17:00", true),
+                slot("Monday", "12:00", "13:30", false)));
+        store(2L, List.of(
+                slot("Monday", "10:00", "16:00", true)));
+
+        Map<String, List<CommonFreeTimeResponse.FreeWindow>> windows =
+                timetableService.findCommonFreeTime(List.of(1L, 2L), 5);
+
+        assertThat(windows.get("Monday"))
+                .extracting(CommonFreeTimeResponse.FreeWindow::getStartTime,
+                        CommonFreeTimeResponse.FreeWindow::getEndTime,
+                        CommonFreeTimeResponse.FreeWindow::getMinutes)
+                .containsExactly(
+                        tuple("13:30", "16:00", 150),
+                        tuple("10:00", "12:00", 120));
+        assertThat(windows.get("Tuesday")).isEmpty();
+    }
+
+    @Test
+    void participantWithoutTimetableHasNoCommonFreeTime() {
+        store(1L, List.of(slot("Monday", "09:00", "17:00", true)));
+
+        Map<String, List<CommonFreeTimeResponse.FreeWindow>> windows =
+                timetableService.findCommonFreeTime(List.of(1L, 3L), 5);
+
+        assertThat(windows).hasSize(7);
+        assertThat(windows.values()).allSatisfy(day -> assertThat(day).isEmpty());
+    }
+
+    @Test
+    void topKKeepsTheLongestWindowsPerDay() {
+        store(1L, List.of(
+                slot("Friday", "08:00", "09:00", true),
+                slot("Friday", "10:00", "13:00", true),
+                slot("Friday", "14:00", "14:30", true)));
+
+        List<CommonFreeTimeResponse.FreeWindow> friday =
+                timetableService.findCommonFreeTime(List.of(1L), 2).get("Friday");
+
+        assertThat(friday).extracting(CommonFreeTimeResponse.FreeWindow::getMinutes).containsExactly(180, 60);
+    }
+
+    @Test
+    void participantsAreLoadedInOneQueryFromTheDatabase() {
+        store(1L, List.of(slot("Monday", "09:00", "17:00", true)));
+        store(2L, List.of(slot("Monday", "09:00", "17:00", true)));
+
+        timetableService.findCommonFreeTime(List.of(1L, 2L, 2L), 5);
+
+        verify(userAvailabilityRepository, times(1)).findAllById(Set.of(1L, 2L));
+    }
+
+    @Test
+    void windowRunningToMidnightEndsAt2400() {
+        byte[] alwaysFree = WeeklyAvailability.EMPTY.toBytes();
+        Arrays.fill(alwaysFree, (byte) 0xFF);
+        stored.put(1L, new UserAvailability(1L, alwaysFree, LocalDateTime.now()));
+
+        List<CommonFreeTimeResponse.FreeWindow> monday =
+                timetableService.findCommonFreeTime(List.of(1L), 1).get("Monday");
+
+        assertThat(monday).extracting(CommonFreeTimeResponse.FreeWindow::getStartTime,
+                        CommonFreeTimeResponse.FreeWindow::getEndTime,
+                        CommonFreeTimeResponse.FreeWindow::getMinutes)
+                .containsExactly(tuple("00:00", "24:00", 1440));
+    }
+
+    private void store(Long userId, List<TimetableSlot> slots) {
+        byte[] bitmap = WeeklyAvailability.fromSlots(slots).toBytes();
+        stored.put(userId, new UserAvailability(userId, bitmap, LocalDateTime.now()));
+    }
+
+    private static TimetableSlot slot(String day, String start, String end, boolean free) {
+        TimetableSlot slot = new TimetableSlot();
+        slot.setDayOfWeek(day);
+        slot.setStartTime(LocalTime.parse(start));
+        slot.setEndTime(LocalTime.parse(end));
+        slot.setIsFree(free);
+        return slot;
+    }
+}